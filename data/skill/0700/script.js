@@ -1,12 +1,8 @@
 importClass(Packages.org.lwjgl.util.Point);
-var p = new Array(new Point(0, step+1));
-if(sm.hasMonsterAt(p[0])){
-	sm.hit(p, 1.0);
+// the shot is resolved on the first step, the next steps only move the projectile
+if(step==0)
+	flight = sm.shoot(11, 1.0);
+if(step>=flight)
 	sm.stop();
-}else if(sm.hasStrongEntityAt(p[0])){
-	sm.stop();
-}else{
-	sm.play(p[0]);
-}
-if(step==10)
-	sm.stop();
\ No newline at end of file
+else
+	sm.play(new Point(0, step+1));
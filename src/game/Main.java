@@ -12,16 +12,23 @@ import static org.lwjgl.opengl.GL11.glEnable;
 import static org.lwjgl.opengl.GL11.glLoadIdentity;
 import static org.lwjgl.opengl.GL11.glMatrixMode;
 import static org.lwjgl.opengl.GL11.glOrtho;
+import game.features.Formulas;
 import game.structure.MapManager;
 import game.structure.Slot;
 import game.ui.MsgBoxManager;
 import game.ui.UserInterface;
 import game.ui.window.Window;
+import game.util.CommandQueue;
+import game.util.GameClock;
+import game.util.GameRandom;
+import game.util.Input;
+import game.util.InputJournal;
+import game.util.Scheduler;
 import game.util.XMLParser;
 
+import java.io.IOException;
+
 import org.lwjgl.LWJGLException;
-import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.util.Dimension;
@@ -34,6 +41,17 @@ public class Main
 
 	public static String NAME = "Game";
 	public static Dimension GRIDSIZE, DIM;
+	public static int TICK_RATE = 60, FPS = 60, MAX_CATCH_UP = 5; // ticks per second, frames per second, max ticks per frame
+	public static int INACTIVE_TICK_INTERVAL = 10; // maps without the player are updated once every this many ticks
+	public static int UPDATE_THREADS = 0; // threads updating the maps concurrently (0 for one per processor, 1 to update them serially)
+
+	private static GameClock clock; // the single time source of the simulation
+	private static GameRandom random; // the single random source of the simulation
+	private static CommandQueue commands = new CommandQueue(1024); // changes posted by other threads, run every tick
+	private static Scheduler scheduler = new Scheduler(0); // delayed and repeating game tasks
+	private static boolean headless = false; // no display, no textures, no fonts
+	private static boolean unthrottled = false; // headless only, run the ticks back to back
+	private static long maxTicks = -1; // headless only, stop after this many ticks (-1 to run forever)
 
 	static //static "constructor"
 	{
@@ -45,11 +63,40 @@ public class Main
 		Slot.SIZE = Integer.parseInt(parser.getAttribute("Game", "tile_size").replace("px", ""));
 
 		DIM = new Dimension(Slot.SIZE * GRIDSIZE.getWidth(), Slot.SIZE * GRIDSIZE.getHeight());
+
+		// timing attributes are optional, keep the defaults if they are missing
+		if (!parser.getAttribute("Game", "tick_rate").equals(""))
+			TICK_RATE = Integer.parseInt(parser.getAttribute("Game", "tick_rate"));
+		if (!parser.getAttribute("Game", "fps").equals(""))
+			FPS = Integer.parseInt(parser.getAttribute("Game", "fps"));
+		if (!parser.getAttribute("Game", "max_catch_up").equals(""))
+			MAX_CATCH_UP = Integer.parseInt(parser.getAttribute("Game", "max_catch_up"));
+		if (!parser.getAttribute("Game", "inactive_tick_interval").equals(""))
+			INACTIVE_TICK_INTERVAL = Integer.parseInt(parser.getAttribute("Game", "inactive_tick_interval"));
+		if (!parser.getAttribute("Game", "update_threads").equals(""))
+			UPDATE_THREADS = Integer.parseInt(parser.getAttribute("Game", "update_threads"));
+
+		clock = new GameClock(TICK_RATE);
+
+		Formulas.load("formulas.xml"); // compiled once, before anything uses them
+
+		// a fixed seed makes runs reproducible, otherwise print the generated one so a run can be repeated
+		if (!parser.getAttribute("Game", "seed").equals(""))
+			random = new GameRandom(Long.parseLong(parser.getAttribute("Game", "seed")));
+		else
+			random = new GameRandom(System.nanoTime());
 	}
 	
 	public Main()
 	{
 
+		if (headless)
+		{
+			simulate();
+			Input.close();
+			System.exit(0);
+		}
+
 		// create window
 		try
 		{
@@ -63,25 +110,106 @@ public class Main
 		}
 
 		initGL();
+		UserInterface.loadFonts();
 
 		// Game Loop
+		// The simulation advances in fixed ticks of 1/TICK_RATE seconds, independently of the frame rate. Each frame
+		// runs as many ticks as the elapsed (clock scaled) time allows (up to MAX_CATCH_UP) and renders once.
+		long previous = System.nanoTime();
+
 		while (!Display.isCloseRequested())// as long as close button is not pressed
-		{ 
-			input();
-			MapManager.update(); // updates the current map
+		{
+			long now = System.nanoTime();
+			clock.elapse(now - previous);
+			previous = now;
+
+			Input.poll(clock.getTick() + 1); // the events are handled in the next tick
+
+			int steps = 0, maxSteps = clock.getMaxSteps(MAX_CATCH_UP);
+			while (clock.isTickDue() && steps < maxSteps)
+			{
+				step();
+				steps++;
+			}
+
+			if (clock.isTickDue()) // too far behind (e.g. window dragged), drop the backlog instead of spiralling
+				clock.dropBacklog();
 
 			glClear(GL_COLOR_BUFFER_BIT); // clears the screen
 			MapManager.render(); // render the active map
 			UserInterface.render(); // renders the interface
 
 			Display.update(); // update the screen
-			Display.sync(120); // set fps to 60
+			Display.sync(FPS); // cap the frame rate, the game speed does not depend on it
 		}
 
+		Input.close();
 		Display.destroy();
 		System.exit(0);
 	}
 
+	private void simulate()
+	{
+		// Headless loop: only updates the maps at the tick rate (or as fast as possible if unthrottled). Input can
+		// only come from a replayed journal since there is no keyboard.
+		System.out.println("Running headless" + (maxTicks >= 0 ? " for " + maxTicks + " ticks" : ""));
+
+		long start = System.nanoTime();
+		long previous = start;
+
+		while (maxTicks < 0 || clock.getTick() < maxTicks)
+		{
+			if (unthrottled)
+			{
+				step();
+				continue;
+			}
+
+			long now = System.nanoTime();
+			clock.elapse(now - previous);
+			previous = now;
+
+			int steps = 0, maxSteps = clock.getMaxSteps(MAX_CATCH_UP);
+			while (clock.isTickDue() && steps < maxSteps && (maxTicks < 0 || clock.getTick() < maxTicks))
+			{
+				step();
+				steps++;
+			}
+
+			if (clock.isTickDue())
+			{
+				clock.dropBacklog();
+			} else
+			{
+				try
+				{
+					Thread.sleep(1); // wait for the next tick
+				} catch (InterruptedException e)
+				{
+					return;
+				}
+			}
+		}
+
+		long millis = (System.nanoTime() - start) / 1000000;
+		System.out.println("Simulated " + clock.getTick() + " ticks in " + millis + "ms ("
+				+ (millis > 0 ? clock.getTick() * 1000 / millis : clock.getTick()) + " ticks/s)");
+	}
+
+	/**
+	 * Runs one tick: advances the clock, runs the commands posted by other
+	 * threads and the scheduled tasks due, handles the input of the tick and
+	 * updates the maps.
+	 */
+	private void step()
+	{
+		clock.tick();
+		commands.drain();
+		scheduler.advance(clock.getTick());
+		input();
+		MapManager.update();
+	}
+
 	private void initGL()
 	{
 		// init GL
@@ -97,25 +225,201 @@ public class Main
 	{
 		// give input to the map and windows unless the messagebox is active
 
-		while (Keyboard.next()) // checks for a keyboard event
+		while (Input.next(clock.getTick())) // checks for an event of this tick (live or replayed)
 		{
-			if (MsgBoxManager.isActive())
+			if (Input.isKeyEvent())
 			{
-				MsgBoxManager.input();
+				if (MsgBoxManager.isActive())
+				{
+					MsgBoxManager.input();
+				} else
+				{
+					MapManager.input();
+					Window.keyboardInput();
+				}
 			} else
 			{
-				MapManager.input();
-				Window.keyboardInput();
+				Window.mouseInput();
 			}
 		}
 
-		while (Mouse.next()) // checks for a mouse event
-			Window.mouseInput();
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>getClock</b> <br>
+	 * <p>
+	 * <tt>public static GameClock getClock()</tt>
+	 * </p>
+	 * Returns the clock of the simulation. It is read once per tick, every
+	 * gameplay timer is based on it. <br>
+	 * <br>
+	 */
+	public static GameClock getClock()
+	{
+		return clock;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>setClock</b> <br>
+	 * <p>
+	 * <tt>public static void setClock(GameClock c)</tt>
+	 * </p>
+	 * Replaces the clock of the simulation, e.g. to run it accelerated in
+	 * tests and benchmarks. Must be called before the maps are loaded. <br>
+	 * <br>
+	 */
+	public static void setClock(GameClock c)
+	{
+		clock = c;
+	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>getCommands</b> <br>
+	 * <p>
+	 * <tt>public static CommandQueue getCommands()</tt>
+	 * </p>
+	 * Returns the queue where threads other than the game thread post the
+	 * changes they want to make to the game. <br>
+	 * <br>
+	 */
+	public static CommandQueue getCommands()
+	{
+		return commands;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>getScheduler</b> <br>
+	 * <p>
+	 * <tt>public static Scheduler getScheduler()</tt>
+	 * </p>
+	 * Returns the scheduler of the game tasks, run on the game thread at the
+	 * start of every tick. <br>
+	 * <br>
+	 */
+	public static Scheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>getRandom</b> <br>
+	 * <p>
+	 * <tt>public static GameRandom getRandom()</tt>
+	 * </p>
+	 * Returns the seeded random source of the world. <br>
+	 * <br>
+	 */
+	public static GameRandom getRandom()
+	{
+		return random;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>setRandom</b> <br>
+	 * <p>
+	 * <tt>public static void setRandom(GameRandom r)</tt>
+	 * </p>
+	 * Replaces the random source of the world, e.g. to reproduce a run with a
+	 * known seed. Must be called before the maps are loaded. <br>
+	 * <br>
+	 */
+	public static void setRandom(GameRandom r)
+	{
+		random = r;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>isHeadless</b> <br>
+	 * <p>
+	 * <tt>public static boolean isHeadless()</tt>
+	 * </p>
+	 * Returns true if the game runs without a display (<tt>--headless</tt>).
+	 * No textures nor fonts are loaded and nothing is rendered. <br>
+	 * <br>
+	 */
+	public static boolean isHeadless()
+	{
+		return headless;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>setHeadless</b> <br>
+	 * <p>
+	 * <tt>public static void setHeadless(boolean h)</tt>
+	 * </p>
+	 * Runs the simulation without a display, e.g. when driving
+	 * <tt>MapManager.update()</tt> from tests and benchmarks. Must be called
+	 * before the maps are loaded. <br>
+	 * <br>
+	 */
+	public static void setHeadless(boolean h)
+	{
+		headless = h;
 	}
 
 	public static void main(String[] args)
 	{
+		String recordPath = null, replayPath = null;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("--speed") && i + 1 < args.length) // e.g. --speed 100 to fast-forward
+				clock.setSpeed(Double.parseDouble(args[++i]));
+			else if (args[i].equals("--seed") && i + 1 < args.length)
+				random = new GameRandom(Long.parseLong(args[++i]));
+			else if (args[i].equals("--record") && i + 1 < args.length)
+				recordPath = args[++i];
+			else if (args[i].equals("--replay") && i + 1 < args.length)
+				replayPath = args[++i];
+			else if (args[i].equals("--headless"))
+				headless = true;
+			else if (args[i].equals("--unthrottled"))
+				unthrottled = true;
+			else if (args[i].equals("--ticks") && i + 1 < args.length)
+				maxTicks = Long.parseLong(args[++i]);
+		}
+
+		try
+		{
+			if (replayPath != null)
+			{
+				// a replay needs the same seed and tick rate as the recorded session
+				InputJournal journal = Input.replay(replayPath);
+				random = new GameRandom(journal.getSeed());
+				if (journal.getTickRate() != clock.getTickRate())
+				{
+					double speed = clock.getSpeed();
+					clock = new GameClock(journal.getTickRate());
+					clock.setSpeed(speed);
+				}
+			} else if (recordPath != null)
+			{
+				Input.record(recordPath, clock.getTickRate(), random.getSeed());
+			}
+		} catch (IOException e)
+		{
+			System.out.println("Unable to open the input journal: " + e.getMessage());
+			System.exit(1);
+		}
+
+		System.out.println("World seed: " + random.getSeed());
+
 		new Main();
 	}
 
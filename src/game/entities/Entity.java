@@ -1,5 +1,6 @@
 package game.entities;
 
+import game.Main;
 import game.entities.item.EquipItem;
 import game.entities.item.EtcItem;
 import game.entities.item.UsableItem;
@@ -23,7 +24,8 @@ public abstract class Entity extends GameObject
 	private Dimension renderSize = new Dimension(1, 1);
 	private Point renderOffset = new Point();
 	private boolean strong = false;
-	private Point position;
+	private int x, y; // position in the map
+	private boolean placed = false; // whether it has a position
 	private Texture texture;
 	private boolean invisible = false;
 
@@ -64,8 +66,8 @@ public abstract class Entity extends GameObject
 	public void render()
 	{
 		if (!isInvisible())
-			Util.renderEntity(getTexture(), Util.pointArithmetic(-1, position(), getMap().getOffSet()), getRenderOffset(),
-					getRenderSize());
+			Util.renderEntity(getTexture(), getGridX(), getGridY(), renderOffset.getX(), renderOffset.getY(),
+					renderSize.getWidth(), renderSize.getHeight(), 0, 0, 0);
 	}
 
 	public void UIRender()
@@ -88,22 +90,37 @@ public abstract class Entity extends GameObject
 	 */
 	public void render(int x, int y) //TODO make it a static method with an id parameter to render its texture (to be called by the inventory)
 	{
-		Util.renderEntity(getTexture(), new Point(0, 0), new Point(x, y), renderSize);
+		Util.renderEntity(getTexture(), 0, 0, x, y, renderSize.getWidth(), renderSize.getHeight(), 0, 0, 0);
 	}
 
+	/**
+	 * Returns a copy of the position, or null if the entity is not in a map.
+	 * The hot paths use <tt>getX()</tt> and <tt>getY()</tt>, which do not
+	 * allocate.
+	 */
 	public Point position()
 	{
-		return position;
+		return placed ? new Point(x, y) : null;
 	}
 
 	public int getX()
 	{
-		return position().getX();
+		return x;
 	}
 
 	public int getY()
 	{
-		return position().getY();
+		return y;
+	}
+
+	/**
+	 * Returns the position packed in an int.
+	 * 
+	 * @see game.util.Util#pack(int, int)
+	 */
+	public int getPackedPosition()
+	{
+		return Util.pack(x, y);
 	}
 
 	/**
@@ -119,17 +136,17 @@ public abstract class Entity extends GameObject
 	 */
 	public void setPosition(Point pos)
 	{
-		if (position() != null)
-		{
-			getMap().get(position()).remove(this);
-		}
-		getMap().get(pos).add(this);
-		position = new Point(pos); // save a reference to the position
+		setPosition(pos.getX(), pos.getY());
 	}
 
 	public void setPosition(int x, int y)
 	{
-		setPosition(new Point(x, y));
+		if (placed)
+		{
+			getMap().get(this.x, this.y).remove(this);
+		}
+		getMap().get(x, y).add(this);
+		modifyPos(x, y);
 	}
 
 	public void setX(int x)
@@ -154,7 +171,17 @@ public abstract class Entity extends GameObject
 	 */
 	public Point getPositionInGrid()
 	{
-		return new Point(getX() - getMap().getOffSet().getX(), getY() - getMap().getOffSet().getY());
+		return new Point(getGridX(), getGridY());
+	}
+
+	public int getGridX()
+	{
+		return x - getMap().getOffSet().getX();
+	}
+
+	public int getGridY()
+	{
+		return y - getMap().getOffSet().getY();
 	}
 
 	/**
@@ -210,6 +237,16 @@ public abstract class Entity extends GameObject
 		return new Dimension(renderSize);
 	}
 
+	public int getRenderWidth()
+	{
+		return renderSize.getWidth();
+	}
+
+	public int getRenderHeight()
+	{
+		return renderSize.getHeight();
+	}
+
 	public void setRenderSize(int width, int height)
 	{
 		renderSize.setSize(width, height);
@@ -217,6 +254,8 @@ public abstract class Entity extends GameObject
 
 	public Texture getTexture()
 	{
+		if (texture == null && !isInvisible() && !Main.isHeadless()) // resolved on the first render
+			texture = getMap().getTextureManager().get(id());
 		return texture;
 	}
 
@@ -242,6 +281,16 @@ public abstract class Entity extends GameObject
 		return new Point(renderOffset); // new point for immutability
 	}
 
+	public int getRenderOffsetX()
+	{
+		return renderOffset.getX();
+	}
+
+	public int getRenderOffsetY()
+	{
+		return renderOffset.getY();
+	}
+
 	/**
 	 * 
 	 * <br>
@@ -275,7 +324,27 @@ public abstract class Entity extends GameObject
 	 */
 	public void modifyPos(Point pos)
 	{
-		position = pos;
+		modifyPos(pos.getX(), pos.getY());
+	}
+
+	public void modifyPos(int x, int y)
+	{
+		this.x = x;
+		this.y = y;
+		placed = true;
+	}
+
+	public boolean isPlaced()
+	{
+		return placed;
+	}
+
+	/**
+	 * Forgets the position of the entity, once no slot holds it.
+	 */
+	protected void unplace()
+	{
+		placed = false;
 	}
 
 	public boolean isInvisible()
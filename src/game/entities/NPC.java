@@ -1,6 +1,8 @@
 package game.entities;
 
 import game.scripting.NPCConversationManager;
+import game.structure.Path;
+import game.structure.PathFinder;
 import game.structure.Slot;
 import game.util.Util;
 import game.util.XMLParser;
@@ -24,7 +26,20 @@ import javax.script.ScriptException;
 public class NPC extends Entity
 {
 
+	private static final int STEP_PERIOD = 500, MAX_PATH_FAILS = 10; // milliseconds between steps, blocked steps
 	private String name;
+	private Path path; // being walked
+	private int pathStep, pathFails;
+	private long nextStep = 0; // in ticks
+	private PathFinder.Callback pathFound = new PathFinder.Callback()
+	{
+		public void pathFound(Path found)
+		{
+			setPath(found != null && found.length() > 0 ? found : null);
+			pathStep = 0;
+			pathFails = 0;
+		}
+	};
 	private static java.util.Map<Integer, String> names = new HashMap<Integer, String>();
 	private static NPC npc; //reference to the npc whose script is being executed.
 	private static ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");;
@@ -46,6 +61,60 @@ public class NPC extends Entity
 		name = names.get(id);
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>walkTo</b> <br>
+	 * <p>
+	 * <tt>public void walkTo(int x, int y)</tt>
+	 * </p>
+	 * Makes the NPC walk to the given slot of its map, around the obstacles.
+	 * The path is requested to the map and walked one step every
+	 * <tt>STEP_PERIOD</tt> milliseconds. <br>
+	 * <br>
+	 */
+	public void walkTo(int x, int y)
+	{
+		setPath(null);
+		getMap().getPathFinder().request(getX(), getY(), x, y, pathFound);
+	}
+
+	/**
+	 * Starts or ends a walk. A walking NPC is not an obstacle of the map, it
+	 * moves out of the way as the superentities do.
+	 */
+	private void setPath(Path path)
+	{
+		boolean walking = this.path != null;
+		this.path = path;
+		if (walking != (path != null) && isPlaced())
+			getMap().updateObstacle(getX(), getY());
+	}
+
+	public boolean isWalking()
+	{
+		return path != null;
+	}
+
+	public void update()
+	{
+		if (path == null || getClock().getTick() < nextStep)
+			return;
+
+		nextStep = getClock().getTick() + getClock().toTicks(STEP_PERIOD);
+		int x = path.getX(pathStep + 1), y = path.getY(pathStep + 1);
+		if (getMap().isWalkable(x, y))
+		{
+			setPosition(x, y);
+			pathFails = 0;
+			if (++pathStep == path.length())
+				setPath(null);
+		} else if (++pathFails > MAX_PATH_FAILS) // something stays in the way
+		{
+			setPath(null);
+		}
+	}
+
 	public void UIRender()
 	{
 		//Render NPC name
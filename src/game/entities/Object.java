@@ -5,7 +5,6 @@ import game.util.XMLParser;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.lwjgl.util.Point;
 
 /**
  * Entity for objects such as trees or houses.
@@ -34,7 +33,7 @@ public class Object extends Entity
 		for (java.util.Map<String, String> data : blockList)
 		{
 			Block block = new Block(this);
-			block.modifyPos(new Point(Integer.parseInt(data.get("x")), Integer.parseInt(data.get("y"))));
+			block.modifyPos(Integer.parseInt(data.get("x")), Integer.parseInt(data.get("y")));
 			blocks.add(block);
 		}
 
@@ -55,15 +54,15 @@ public class Object extends Entity
 		return id() == Integer.parseInt("6700", 16);
 	}
 
-	public void modifyPos(Point pos)
+	public void modifyPos(int x, int y)
 	{
-		super.modifyPos(pos);
+		super.modifyPos(x, y);
 
 		if (blocks != null)
 		{
 			for (Block block : blocks)
 			{
-				block.modifyPos(new Point(pos.getX() + block.getX(), pos.getY() + block.getY()));
+				block.modifyPos(x + block.getX(), y + block.getY());
 			}
 		}
 	}
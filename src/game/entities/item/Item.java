@@ -4,9 +4,7 @@ import game.entities.Entity;
 import game.entities.EntityType;
 import game.util.XMLParser;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.HashMap;
 
 import org.lwjgl.util.Point;
 
@@ -18,6 +16,7 @@ public abstract class Item extends Entity
 
 	private String NAME, DESCRIPTION;
 	private int quantity;
+	private static final java.util.Map<Integer, Item> definitions = new HashMap<Integer, Item>(); // one item per id, for the bags
 
 	public Item(int id, int amount)
 	{
@@ -25,8 +24,6 @@ public abstract class Item extends Entity
 		quantity = amount;
 
 		parseItem(new XMLParser(EntityType.getType(id()) + "/" + hexID() + "/data.xml"));
-
-		setTexture(getMap().getTextureManager().get(id()));
 	}
 
 	protected void parseItem(XMLParser parser)
@@ -45,6 +42,31 @@ public abstract class Item extends Entity
 		this(id, 1);
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>getDefinition</b> <br>
+	 * <p>
+	 * <tt>public static synchronized Item getDefinition(int id)</tt>
+	 * </p>
+	 * Returns the item shared by every stack with the given id, to get its
+	 * name, description and texture, or to use it. Created the first time it
+	 * is asked for. <br>
+	 * <br>
+	 * 
+	 * @see ItemStack
+	 */
+	public static synchronized Item getDefinition(int id)
+	{
+		Item item = definitions.get(id);
+		if (item == null)
+		{
+			item = (Item) Entity.createEntity(id);
+			definitions.put(id, item);
+		}
+		return item;
+	}
+
 	public String getName()
 	{
 		return NAME;
@@ -70,41 +92,31 @@ public abstract class Item extends Entity
 		quantity += num;
 	}
 
-	public void setPosition(Point pos)
+	public void setPosition(int x, int y)
 	{
-		if (position() != null)
+		if (isPlaced())
 		{
-
-			List<Item> items = getMap().get(position()).getItems();
-
-			for (ListIterator<Item> l = items.listIterator(); l.hasNext();)
-			{
-				if (l.next().equals(this))
-					l.remove();
-			}
+			getMap().get(getX(), getY()).removeItem(this);
 		}
 
-		getMap().get(pos).addItem(this);
-		modifyPos(new Point(pos));
+		if (getMap().get(x, y).addItem(this))
+			modifyPos(x, y);
+		else
+			unplace(); // joined the stack on the slot
 	}
 
-	public String toString()
+	/**
+	 * Returns true if items with the same id are kept as a single item with
+	 * their quantities added. Equips are not stackable.
+	 */
+	public boolean isStackable()
 	{
-		return getName();
+		return EntityType.getType(id()) != EntityType.EquipItem;
 	}
-	
-	public static List<Item> stack(List<Item> items)
+
+	public String toString()
 	{
-		List<Item> stackedItems = new ArrayList<Item>();
-		for(Item i: items){
-			if(stackedItems.contains(i) && EntityType.getType(i.id()) != EntityType.EquipItem)
-				stackedItems.get(stackedItems.indexOf(i)).add(i.getQuantity());
-			else
-				stackedItems.add(i);
-		}
-		
-		return stackedItems;
-		
+		return getName();
 	}
 
 }
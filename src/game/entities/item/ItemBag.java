@@ -0,0 +1,191 @@
+package game.entities.item;
+
+import java.util.HashMap;
+
+/**
+ * A fixed amount of item stacks, in the order they were added, with an index
+ * by id so finding, counting and taking items does not go over the bag. Each
+ * stackable id has a single stack, each equip takes a place of its own.
+ *
+ * @see ItemStack
+ */
+public class ItemBag
+{
+
+	private final ItemStack stacks[];
+	private int size = 0;
+	private final java.util.Map<Integer, ItemStack> index = new HashMap<Integer, ItemStack>(); // stack of each stackable id
+	private final java.util.Map<Integer, Integer> equips = new HashMap<Integer, Integer>(); // amount of equips of each id
+
+	public ItemBag(int capacity)
+	{
+		stacks = new ItemStack[capacity];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>add</b> <br>
+	 * <p>
+	 * <tt>public boolean add(ItemStack stack)</tt>
+	 * </p>
+	 * Adds the stack to the bag, joining the stack with the same id if it is
+	 * stackable. Returns false if it needs a place and the bag is full. <br>
+	 * <br>
+	 */
+	public boolean add(ItemStack stack)
+	{
+		if (stack.isStackable())
+		{
+			ItemStack held = index.get(stack.id());
+			if (held != null)
+			{
+				held.add(stack.getQuantity());
+				return true;
+			}
+		}
+
+		if (size == stacks.length)
+			return false;
+
+		stacks[size++] = stack;
+		if (stack.isStackable())
+			index.put(stack.id(), stack);
+		else
+			equips.put(stack.id(), getEquipCount(stack.id()) + 1);
+		return true;
+	}
+
+	/**
+	 * Returns true if the stack would be added: it joins a stack or there is
+	 * room.
+	 */
+	public boolean canAdd(ItemStack stack)
+	{
+		return size < stacks.length || (stack.isStackable() && index.containsKey(stack.id()));
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>remove</b> <br>
+	 * <p>
+	 * <tt>public boolean remove(int id, int amount)</tt>
+	 * </p>
+	 * Takes <i>amount</i> items with the given id, removing the stacks left
+	 * empty. Takes nothing and returns false if there are not enough. <br>
+	 * <br>
+	 */
+	public boolean remove(int id, int amount)
+	{
+		if (!contains(id, amount))
+			return false;
+
+		ItemStack stack = index.get(id);
+		if (stack != null)
+		{
+			stack.add(-amount);
+			if (stack.getQuantity() <= 0)
+				remove(stack);
+			return true;
+		}
+
+		for (int i = size - 1; i >= 0 && amount > 0; i--)
+		{
+			if (stacks[i].id() == id)
+			{
+				remove(stacks[i]);
+				amount--;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the stack from the bag, keeping the order of the others.
+	 */
+	public void remove(ItemStack stack)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (stacks[i] == stack)
+			{
+				System.arraycopy(stacks, i + 1, stacks, i, size - i - 1);
+				stacks[--size] = null;
+
+				if (stack.isStackable())
+					index.remove(stack.id());
+				else if (getEquipCount(stack.id()) > 1)
+					equips.put(stack.id(), getEquipCount(stack.id()) - 1);
+				else
+					equips.remove(stack.id());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the stack of the given id, or the first equip with it. Null if
+	 * there is none.
+	 */
+	public ItemStack find(int id)
+	{
+		ItemStack stack = index.get(id);
+		if (stack != null || !equips.containsKey(id))
+			return stack;
+
+		for (int i = 0; i < size; i++)
+		{
+			if (stacks[i].id() == id)
+				return stacks[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns how many items with the given id the bag holds.
+	 */
+	public int count(int id)
+	{
+		ItemStack stack = index.get(id);
+		return stack != null ? stack.getQuantity() : getEquipCount(id);
+	}
+
+	public boolean contains(int id, int amount)
+	{
+		return count(id) >= amount;
+	}
+
+	private int getEquipCount(int id)
+	{
+		Integer count = equips.get(id);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * Returns the stack at the given place of the bag.
+	 */
+	public ItemStack get(int place)
+	{
+		return stacks[place];
+	}
+
+	/**
+	 * Returns the amount of places taken.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public int capacity()
+	{
+		return stacks.length;
+	}
+
+	public boolean isFull()
+	{
+		return size == stacks.length;
+	}
+
+}
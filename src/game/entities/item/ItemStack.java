@@ -0,0 +1,150 @@
+package game.entities.item;
+
+import game.entities.EntityType;
+
+/**
+ * An amount of items of the same id held in a bag. Unlike an item in a map
+ * it has no position, texture or render state: the name, description and
+ * texture come from the shared definition of its id. An equip is always a
+ * stack of one and keeps its own instance, the stats of the equip.
+ *
+ * @see ItemBag
+ * @see Item#getDefinition(int)
+ */
+public class ItemStack
+{
+
+	private final int id;
+	private int quantity;
+	private final EquipItem equip; // null if the item is stackable
+
+	public ItemStack(int id, int quantity)
+	{
+		this.id = id;
+		this.quantity = quantity;
+		equip = null;
+	}
+
+	public ItemStack(EquipItem equip)
+	{
+		id = equip.id();
+		quantity = 1;
+		this.equip = equip;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>of</b> <br>
+	 * <p>
+	 * <tt>public static ItemStack of(Item item)</tt>
+	 * </p>
+	 * Returns a stack holding the item: its id and quantity, or the item
+	 * itself if it is an equip. <br>
+	 * <br>
+	 */
+	public static ItemStack of(Item item)
+	{
+		if (item instanceof EquipItem)
+			return new ItemStack((EquipItem) item);
+		return new ItemStack(item.id(), item.getQuantity());
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>create</b> <br>
+	 * <p>
+	 * <tt>public static ItemStack create(int id, int quantity)</tt>
+	 * </p>
+	 * Returns a new stack of <i>quantity</i> items with the given id, or a
+	 * new equip if the id is of an equip. <br>
+	 * <br>
+	 */
+	public static ItemStack create(int id, int quantity)
+	{
+		if (EntityType.getType(id) == EntityType.EquipItem)
+			return new ItemStack(new EquipItem(id));
+		return new ItemStack(id, quantity);
+	}
+
+	/**
+	 * Returns a new stack with the same id and quantity, with a new instance
+	 * if it is an equip. Used to give copies of a stack kept as a template.
+	 */
+	public ItemStack copy()
+	{
+		return create(id, quantity);
+	}
+
+	public int id()
+	{
+		return id;
+	}
+
+	public int getQuantity()
+	{
+		return quantity;
+	}
+
+	public void setQuantity(int quantity)
+	{
+		this.quantity = quantity;
+	}
+
+	public void add(int amount)
+	{
+		quantity += amount;
+	}
+
+	public boolean isStackable()
+	{
+		return equip == null;
+	}
+
+	/**
+	 * Returns the equip of the stack, or null if it is not an equip.
+	 */
+	public EquipItem getEquip()
+	{
+		return equip;
+	}
+
+	/**
+	 * Returns the item describing the stack: its equip, or the definition of
+	 * its id.
+	 */
+	public Item getItem()
+	{
+		return equip != null ? equip : Item.getDefinition(id);
+	}
+
+	public boolean isUsable()
+	{
+		return getItem() instanceof UsableItem;
+	}
+
+	public String getName()
+	{
+		return getItem().getName();
+	}
+
+	public String getDescription()
+	{
+		return getItem().getDescription();
+	}
+
+	/**
+	 * Renders the texture of the item at position <i>x, y</i> of the screen.
+	 */
+	public void render(int x, int y)
+	{
+		getItem().render(x, y);
+	}
+
+	public String toString()
+	{
+		return getName();
+	}
+
+}
@@ -12,7 +12,13 @@ import static org.lwjgl.opengl.GL11.glVertex2f;
 import game.entities.Entity;
 import game.entities.item.Item;
 import game.features.Quest;
+import game.features.Stat;
+import game.features.StatBlock;
+import game.structure.ActorStore;
+import game.structure.Path;
+import game.structure.PathFinder;
 import game.structure.Slot;
+import game.util.GameRandom.Stream;
 import game.util.Util;
 import game.util.XMLParser;
 
@@ -35,11 +41,38 @@ public class Monster extends SuperEntity
 
 	// TODO? auto update on its own thread?
 
-	private int exp, movePeriod, moveTimer = 0, hp, maxHP, minGold, maxGold;
+	// movement periods in milliseconds (min + random range), converted to ticks when used
+	private static final int MOVE_PERIOD = 1330, MOVE_PERIOD_RANGE = 1170, ANGRY_MOVE_PERIOD = 330,
+			ANGRY_MOVE_PERIOD_RANGE = 330, ATTACK_DELAY = 2000;
+	private static final int LEASH_DISTANCE = 10, MAX_PATH_FAILS = 5; // slots away from its spawn point, blocked steps
+
+	private int exp, minGold, maxGold;
 	private String name;
-	private boolean angry = false, dead = false, respawn;
+	private boolean respawn;
 	private Map<Integer, Integer> dropList = new HashMap<Integer, Integer>();
-	private long nextAtk = 0L;
+	private Random ai; // own AI stream so the monsters can plan concurrently and still reproducibly
+	private int moves[] = new int[4], moveCount = 0; // planned directions, in order of preference
+	private int steps[] = new int[4]; // directions to plan in random order (e.g. given by the flow field), reused every plan
+	private boolean attackPlanned = false;
+	private Spawner spawner; // null if the monster does not respawn
+	private Path path; // the way back to its spawn point, while returning
+	private int pathStep, pathFails;
+	private PathFinder.Callback homeFound = new PathFinder.Callback()
+	{
+		public void pathFound(Path found)
+		{
+			if (!is(ActorStore.RETURNING))
+				return;
+			if (found == null || found.length() == 0)
+				set(ActorStore.RETURNING, false);
+			else
+			{
+				path = found;
+				pathStep = 0;
+				pathFails = 0;
+			}
+		}
+	};
 
 	public Monster(int id)
 	{
@@ -56,7 +89,37 @@ public class Monster extends SuperEntity
 
 		setHP(getMaxHP());
 
-		movePeriod = new Random(System.nanoTime()).nextInt(140) + 160;
+		ai = new Random(getRandom(Stream.AI).nextLong());
+		setNextMove(getClock().getTick() + getClock().toTicks(ai.nextInt(MOVE_PERIOD_RANGE) + MOVE_PERIOD));
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>reset</b> <br>
+	 * <p>
+	 * <tt>public void reset()</tt>
+	 * </p>
+	 * Brings a dead monster back to the state of a newly created one (full
+	 * HP, calm, facing down) so it can be spawned again. Its data, skills and
+	 * textures are kept. <br>
+	 * <br>
+	 * 
+	 * @see MonsterPool
+	 */
+	public void reset()
+	{
+		super.reset();
+
+		set(ActorStore.DEAD | ActorStore.ANGRY | ActorStore.RETURNING, false);
+		path = null;
+		attackPlanned = false;
+		moveCount = 0;
+		getActors().setNextAtk(row(), 0L);
+		setHP(getMaxHP());
+
+		ai.setSeed(getRandom(Stream.AI).nextLong()); // same sequence as a new monster, without creating it
+		setNextMove(getClock().getTick() + getClock().toTicks(ai.nextInt(MOVE_PERIOD_RANGE) + MOVE_PERIOD));
 	}
 
 	private void parseMonster()
@@ -85,7 +148,7 @@ public class Monster extends SuperEntity
 
 	public void UIRender()
 	{
-		if (dead)
+		if (isDead())
 			return;
 
 		float cHP = (float) getHP() / (float) getMaxHP(); // current hp
@@ -136,138 +199,199 @@ public class Monster extends SuperEntity
 
 	}
 
-	public void update()
+	/**
+	 * Decides where to move this tick: a list of directions to try in order.
+	 * Only reads the map, the move is applied in <tt>update()</tt>.
+	 */
+	public void plan()
 	{
+		moveCount = 0;
+		if (isDead())
+			return;
+
+		ActorStore actors = getActors();
+		int row = row();
+		long tick = getClock().getTick();
+		boolean angry = actors.hasFlag(row, ActorStore.ANGRY); // cleared by the map when the player leaves
+
+		attackPlanned = angry && actors.getNextAtk(row) < tick;
 
 		// AutoMove
-		if (moveTimer == movePeriod)
+		if (tick >= actors.getNextMove(row))
 		{
-			Random r = new Random(System.nanoTime());
-			moveTimer = 0;
 			if (angry)
 			{
-				movePeriod = r.nextInt(40) + 40; // move faster when angry
-				int num1 = 0, num2 = 2;
-				// moves based on the player position relative to its position
+				// move faster when angry
+				setNextMove(tick + getClock().toTicks(ai.nextInt(ANGRY_MOVE_PERIOD_RANGE) + ANGRY_MOVE_PERIOD));
+
+				// follow the flow field of the map around the obstacles
+				int count = getMap().getFlowField().getSteps(getX(), getY(), steps);
+				if (count > 0)
+				{
+					planRandomMoves(steps, count);
+					return;
+				}
+
+				// the player cannot be reached, get as close as possible
+				Player p = getMap().getPlayer();
 				// TODO rewrite using Util.addRelPoints
-				if (!(getMap().getPlayer().getX() == getX() || getMap().getPlayer().getY() == getY()))
+				if (!(p.getX() == getX() || p.getY() == getY()))
 				{
-					if (getMap().getPlayer().getX() > getX() && getMap().getPlayer().getY() < getY())
-					{
-						num1 = UP;
-						num2 = RIGHT;
-					} else if (getMap().getPlayer().getX() > getX() && getMap().getPlayer().getY() > getY())
-					{
-						num1 = RIGHT;
-						num2 = DOWN;
-					} else if (getMap().getPlayer().getX() < getX() && getMap().getPlayer().getY() > getY())
-					{
-						num1 = DOWN;
-						num2 = LEFT;
-					} else if (getMap().getPlayer().getX() < getX() && getMap().getPlayer().getY() < getY())
-					{
-						num1 = LEFT;
-						num2 = UP;
-					}
-					ArrayList<Integer> nums = new ArrayList<Integer>(2);
-					nums.add(num1);
-					nums.add(num2);
-					moveRandom(nums);
+					if (p.getX() > getX() && p.getY() < getY())
+						planRandomMoves(UP, RIGHT);
+					else if (p.getX() > getX() && p.getY() > getY())
+						planRandomMoves(RIGHT, DOWN);
+					else if (p.getX() < getX() && p.getY() > getY())
+						planRandomMoves(DOWN, LEFT);
+					else
+						planRandomMoves(LEFT, UP);
 				} else
 				{
-					if (getMap().getPlayer().getX() == getX())
-					{
-						if (getMap().getPlayer().getY() > getY())
-						{
-							move(DOWN);
-						} else
-						{
-							move(UP);
-						}
-					} else
-					{
-						if (getMap().getPlayer().getX() > getX())
-						{
-							move(RIGHT);
-						} else
-						{
-							move(LEFT);
-						}
-					}
+					if (p.getX() == getX())
+						moves[moveCount++] = p.getY() > getY() ? DOWN : UP;
+					else
+						moves[moveCount++] = p.getX() > getX() ? RIGHT : LEFT;
 				}
+			} else if (actors.hasFlag(row, ActorStore.RETURNING))
+			{
+				// hurry back home, waiting for the path if it is not found yet
+				setNextMove(tick + getClock().toTicks(ai.nextInt(ANGRY_MOVE_PERIOD_RANGE) + ANGRY_MOVE_PERIOD));
+				if (path != null)
+					moves[moveCount++] = path.getDirection(pathStep);
 			} else
 			{
-				movePeriod = r.nextInt(140) + 160;
-				List<Integer> nums = new ArrayList<Integer>();
-				nums.add(UP);
-				nums.add(RIGHT);
-				nums.add(DOWN);
-				nums.add(LEFT);
-				moveRandom(nums);
+				setNextMove(tick + getClock().toTicks(ai.nextInt(MOVE_PERIOD_RANGE) + MOVE_PERIOD));
+				steps[0] = UP;
+				steps[1] = RIGHT;
+				steps[2] = DOWN;
+				steps[3] = LEFT;
+				planRandomMoves(steps, 4);
 			}
 		}
-		moveTimer++;
+	}
+
+	/**
+	 * Plans the two directions in random order.
+	 */
+	private void planRandomMoves(int first, int second)
+	{
+		steps[0] = first;
+		steps[1] = second;
+		planRandomMoves(steps, 2);
+	}
+
+	/**
+	 * Plans the first <i>count</i> directions of the array in random order,
+	 * the monster moves to the first one that is free when the plan is
+	 * applied. The array is shuffled in place.
+	 */
+	private void planRandomMoves(int dirs[], int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			int j = i + ai.nextInt(count - i);
+			int dir = dirs[j];
+			dirs[j] = dirs[i];
+			moves[moveCount++] = dir;
+		}
+	}
+
+	/**
+	 * Applies the plan: moves to the first planned direction that is still
+	 * free (another monster may have taken it earlier in this tick) and attacks
+	 * the player if it is in front.
+	 */
+	public void update()
+	{
+		if (isDead())
+			return;
+
+		boolean moved = false;
+		for (int i = 0; i < moveCount && !moved; i++)
+		{
+			int oldX = getX(), oldY = getY();
+			move(moves[i]);
+			moved = oldX != getX() || oldY != getY();
+		}
+
+		if (path != null && moveCount > 0)
+			followPath(moved);
+		moveCount = 0;
+
+		// Leash, give up the chase too far from its spawn point
+		if (is(ActorStore.ANGRY) && spawner != null
+				&& Math.abs(getX() - spawner.getPosition().getX()) + Math.abs(getY() - spawner.getPosition().getY()) > LEASH_DISTANCE)
+		{
+			returnHome();
+		}
 
 		// AutoAttack
-		if (angry)
+		if (attackPlanned && getMap().hasPlayer())
 		{
-			if (nextAtk < System.currentTimeMillis())
+			Player p = getMap().getPlayer();
+			boolean attack = false;
+			switch (getFacingDir())
 			{
-				Player p = getMap().getPlayer();
-				boolean attack = false;
-				switch (getFacingDir())
-				{
-				case UP:
-					if (p.getX() == getX() && p.getY() < getY())
-						attack = true;
-					break;
-				case RIGHT:
-					if (p.getX() > getX() && p.getY() == getY())
-						attack = true;
-					break;
-				case DOWN:
-					if (p.getX() == getX() && p.getY() > getY())
-						attack = true;
-					break;
-				case LEFT:
-					if (p.getX() < getX() && p.getY() == getY())
-						attack = true;
-					break;
-				}
-				if (attack)
-				{
-					getSkill(1792).attack();
-					nextAtk = System.currentTimeMillis() + 2000;
-				}
+			case UP:
+				if (p.getX() == getX() && p.getY() < getY())
+					attack = true;
+				break;
+			case RIGHT:
+				if (p.getX() > getX() && p.getY() == getY())
+					attack = true;
+				break;
+			case DOWN:
+				if (p.getX() == getX() && p.getY() > getY())
+					attack = true;
+				break;
+			case LEFT:
+				if (p.getX() < getX() && p.getY() == getY())
+					attack = true;
+				break;
+			}
+			if (attack && getMap().hasLineOfSight(getX(), getY(), p.getX(), p.getY())) // do not shoot at walls
+			{
+				getSkill(1792).attack();
+				getActors().setNextAtk(row(), getClock().getTick() + getClock().toTicks(ATTACK_DELAY));
 			}
 		}
+		attackPlanned = false; // a plan is only good for its tick
 
 		super.update();
 	}
 
-	private void moveRandom(List<Integer> nums)
+	private void returnHome()
 	{
+		set(ActorStore.ANGRY, false);
+		set(ActorStore.RETURNING, true);
+		path = null;
+		Point home = spawner.getPosition();
+		getMap().getPathFinder().request(getX(), getY(), home.getX(), home.getY(), homeFound);
+	}
 
-		if (nums.size() == 0)
-			return;
-
-		Point oldPos = position();
-
-		int randNum = new Random(System.nanoTime()).nextInt(nums.size());
-		int dir = nums.get(randNum);
-		move(dir);
-
-		if (oldPos.equals(position()))
+	private void followPath(boolean moved)
+	{
+		if (moved && getX() == path.getX(pathStep + 1) && getY() == path.getY(pathStep + 1))
 		{
-			nums.remove(randNum);
-			moveRandom(nums);
+			pathFails = 0;
+			if (++pathStep == path.length()) // home
+			{
+				path = null;
+				set(ActorStore.RETURNING, false);
+			}
+		} else if (++pathFails > MAX_PATH_FAILS) // something is in the way, stop trying
+		{
+			path = null;
+			set(ActorStore.RETURNING, false);
 		}
 	}
 
 	public boolean hit(int damage)
 	{
-		angry = true;
-		moveTimer = movePeriod;
+		set(ActorStore.ANGRY, true);
+		set(ActorStore.RETURNING, false);
+		path = null;
+		setNextMove(getClock().getTick()); // react on the next update
 
 		return super.hit(damage);
 	}
@@ -275,10 +399,10 @@ public class Monster extends SuperEntity
 	public void die()
 	{
 
-		dead = true;
+		set(ActorStore.DEAD, true);
 
 		// drop items
-		Random random = new Random(System.nanoTime());
+		Random random = getRandom(Stream.LOOT);
 		for (Integer id : dropList.keySet())
 		{
 			int num = random.nextInt(101); // generate rand num between 0 and
@@ -286,7 +410,7 @@ public class Monster extends SuperEntity
 			if (num <= dropList.get(id))
 			{ // if the random number is less than the chance of drop, drop
 				Item item = (Item) Entity.createEntity(id);
-				getMap().add(item, position());
+				getMap().add(item, getX(), getY());
 			}
 		}
 
@@ -298,11 +422,31 @@ public class Monster extends SuperEntity
 
 		super.die();
 
+		if (respawns() && spawner != null)
+			spawner.monsterDied(this);
+		else
+			destroyRow(); // never used again, the map stops going over its row
+
 	}
 
 	public boolean isDead()
 	{
-		return dead;
+		return !hasRow() || is(ActorStore.DEAD);
+	}
+
+	private boolean is(int flag)
+	{
+		return getActors().hasFlag(row(), flag);
+	}
+
+	private void set(int flags, boolean value)
+	{
+		getActors().setFlag(row(), flags, value);
+	}
+
+	private void setNextMove(long tick)
+	{
+		getActors().setNextMove(row(), tick);
 	}
 
 	public int getDamage()
@@ -320,6 +464,11 @@ public class Monster extends SuperEntity
 		return respawn;
 	}
 
+	public void setSpawner(Spawner spawner)
+	{
+		this.spawner = spawner;
+	}
+
 	public String getName()
 	{
 		return name;
@@ -332,28 +481,39 @@ public class Monster extends SuperEntity
 
 	public int getHP()
 	{
-		return hp;
+		return getActors().getHP(row());
 	}
 
 	public void setHP(int hp)
 	{
-		this.hp = hp;
-		if (this.hp > maxHP)
-			this.hp = maxHP;
+		getActors().setHP(row(), Math.min(hp, getMaxHP()));
 	}
 
 	public int getMaxHP()
 	{
-		return maxHP;
+		return getActors().getMaxHP(row());
 	}
 
 	public void setMaxHP(int maxHP)
 	{
-		this.maxHP = maxHP;
+		setStat(StatBlock.BASE, Stat.MAXHP, maxHP);
+	}
+
+	/**
+	 * Copies the maximum HP to the store, where the map reads it, keeping the
+	 * HP within it.
+	 */
+	public void statChanged(Stat stat)
+	{
+		if (stat != Stat.MAXHP)
+			return;
+		getActors().setMaxHP(row(), getStat(Stat.MAXHP));
+		if (getHP() > getMaxHP())
+			setHP(getMaxHP());
 	}
 
 	public int getGold(){
-		return new Random().nextInt(maxGold-minGold) + minGold;
+		return getRandom(Stream.LOOT).nextInt(maxGold-minGold) + minGold;
 	}
 	
 }
@@ -0,0 +1,67 @@
+package game.entities.superentities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps the dead monsters of a map, by id, so that spawning a monster reuses a
+ * dead one of the same kind instead of creating it again (parsing its data,
+ * creating its skills and loading its textures). Only used by the thread
+ * updating the map.
+ */
+public class MonsterPool
+{
+
+	private java.util.Map<Integer, List<Monster>> pool = new HashMap<Integer, List<Monster>>();
+
+	/**
+	 * 
+	 * <br>
+	 * <b>acquire</b> <br>
+	 * <p>
+	 * <tt>public Monster acquire(int id)</tt>
+	 * </p>
+	 * Returns a dead monster with the given id reset to its initial state, or
+	 * a new one if there are none. <br>
+	 * <br>
+	 */
+	public Monster acquire(int id)
+	{
+		List<Monster> monsters = pool.get(id);
+		if (monsters == null || monsters.isEmpty())
+			return new Monster(id);
+
+		Monster monster = monsters.remove(monsters.size() - 1);
+		monster.reset();
+		return monster;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>release</b> <br>
+	 * <p>
+	 * <tt>public void release(Monster monster)</tt>
+	 * </p>
+	 * Keeps a dead monster to be reused. <br>
+	 * <br>
+	 */
+	public void release(Monster monster)
+	{
+		List<Monster> monsters = pool.get(monster.id());
+		if (monsters == null)
+		{
+			monsters = new ArrayList<Monster>();
+			pool.put(monster.id(), monsters);
+		}
+		monsters.add(monster); // a monster dies once per life, so it is never released twice
+	}
+
+	public int size(int id)
+	{
+		List<Monster> monsters = pool.get(id);
+		return monsters == null ? 0 : monsters.size();
+	}
+
+}
@@ -10,20 +10,26 @@ import game.entities.Portal;
 import game.entities.item.EquipItem;
 import game.entities.item.EquipItem.EquipType;
 import game.entities.item.Item;
+import game.entities.item.ItemBag;
+import game.entities.item.ItemStack;
 import game.entities.item.UsableItem;
+import game.features.Formulas;
 import game.features.Quest;
+import game.features.Stat;
+import game.features.StatBlock;
+import game.structure.ActorStore;
+import game.structure.EntityVisitor;
 import game.structure.Map;
 import game.structure.Slot;
 import game.ui.MsgBoxManager;
 import game.ui.Shop;
 import game.ui.UserInterface;
-import game.util.Timer;
+import game.util.Input;
 import game.util.Util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
 
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.util.Point;
@@ -36,16 +42,20 @@ public class Player extends SuperEntity
 
 	public static final int INV_LIMIT = 30, MAX_LEVEL = 8, BASE = 0x10, EXTRA = 0x20, TOTAL = 0x30, HELMET = 0,
 			TOPWEAR = 1, BOTTOMWEAR = 2, SHOES = 3, WEAPON = 4;
-	private static final int REGEN = 3;
-	private int level = 1, exp = 0, gold = 0, mp;
-	private volatile int hp;
-	private volatile java.util.Map<Integer, Integer> stats = new HashMap<Integer, Integer>();
+	private static final int REGEN = 3, REGEN_PERIOD = 10000, BLINK_PERIOD = 60; // periods in milliseconds, blink while invincible
+	private int level = 1, exp = 0, gold = 0;
 	private java.util.Map<EquipType, EquipItem> equips = new HashMap<EquipType, EquipItem>();
-	private ArrayList<Item> items = new ArrayList<Item>();
+	private ItemBag items = new ItemBag(INV_LIMIT);
 	private ArrayList<Quest> quests = new ArrayList<Quest>();
-	private static int invincibleRenderCounter = 0;
-	private long nextAtk = 0, invincibleTimer = 0, nextMove = 0;
-	private boolean invincible = false, invincibleRender = false;
+
+	private static final EntityVisitor<Monster> KILL_FIRST = new EntityVisitor<Monster>()
+	{
+		public boolean visit(Monster monster)
+		{
+			monster.die();
+			return false;
+		}
+	};
 
 	public Player(int id, Point pos)
 	{
@@ -55,21 +65,22 @@ public class Player extends SuperEntity
 		// TODO player file with base stats, stats per level, damage formula
 		// parameters, etc.
 
-		stats.put(BASE + MAXHP.ID, 100);
-		stats.put(BASE + MAXMP.ID, 100);
-		stats.put(BASE + ATK.ID, 1);
-		stats.put(BASE + STR.ID, 10);
+		setStat(StatBlock.BASE, MAXHP, 100);
+		setStat(StatBlock.BASE, MAXMP, 100);
+		setStat(StatBlock.BASE, ATK, 1);
+		setStat(StatBlock.BASE, STR, 10);
 
-		stats.put(EXTRA + MAXHP.ID, 0);
-		stats.put(EXTRA + MAXMP.ID, 0);
-		stats.put(EXTRA + ATK.ID, 0);
-		stats.put(EXTRA + STR.ID, 0);
+		setHP(getStat(MAXHP));
+		setMP(getStat(MAXMP));
 
-		setHP(getStat(TOTAL + MAXHP.ID));
-		setMP(getStat(TOTAL + MAXMP.ID));
-
-		Timer timer = new Timer(this, "regen", 10000);
-		timer.start();
+		int period = getClock().toTicks(REGEN_PERIOD);
+		getScheduler().scheduleRepeating(new Runnable()
+		{
+			public void run()
+			{
+				regen();
+			}
+		}, period, period);
 
 	}
 
@@ -82,29 +93,21 @@ public class Player extends SuperEntity
 	public void input()
 	{
 
-		if (Keyboard.getEventKeyState())
+		if (Input.getEventKeyState())
 		{
-			switch (Keyboard.getEventKey())
+			switch (Input.getEventKey())
 			{
 			case Keyboard.KEY_M:
-				for (Slot s : getMap().getAllSlots())
-				{
-					Monster monster = s.getMonster();
-					if (monster != null)
-					{
-						monster.die();
-						break;
-					}
-				}
+				getMap().forEachEntity(Monster.class, KILL_FIRST);
 				break;
 			case Keyboard.KEY_SPACE:
-				action(Util.addRelPoints(position(), new Point(0, 1), getFacingDir()));
+				action(Util.addRel(getX(), getY(), 0, 1, getFacingDir()));
 				break;
 			case Keyboard.KEY_Z:
 				attack(1792);
 				break;
 			case Keyboard.KEY_X:
-				Portal portal = getMap().get(position()).getPortal();
+				Portal portal = getMap().get(getX(), getY()).getPortal();
 				if (portal != null)
 				{
 					portal.run();
@@ -127,79 +130,80 @@ public class Player extends SuperEntity
 		{
 		case Keyboard.KEY_UP:
 			dir = UP;
-			moveCamera = getPositionInGrid().getY() - 1 < Map.VIEW_LIMIT
-					&& getMap().isPointInMap(new Point(0, -1 + getMap().getOffSet().getY()));
+			moveCamera = getGridY() - 1 < Map.VIEW_LIMIT
+					&& getMap().isPointInMap(0, -1 + getMap().getOffSet().getY());
 			break;
 		case Keyboard.KEY_RIGHT:
 			dir = RIGHT;
-			moveCamera = getPositionInGrid().getX() + 1 >= Main.GRIDSIZE.getWidth() - Map.VIEW_LIMIT
-					&& getMap().isPointInMap(new Point(Main.GRIDSIZE.getWidth() + getMap().getOffSet().getX(), 0));
+			moveCamera = getGridX() + 1 >= Main.GRIDSIZE.getWidth() - Map.VIEW_LIMIT
+					&& getMap().isPointInMap(Main.GRIDSIZE.getWidth() + getMap().getOffSet().getX(), 0);
 			break;
 		case Keyboard.KEY_DOWN:
 			dir = DOWN;
-			moveCamera = getPositionInGrid().getY() + 1 >= Main.GRIDSIZE.getHeight() - Map.VIEW_LIMIT
-					&& getMap().isPointInMap(new Point(0, Main.GRIDSIZE.getHeight() + getMap().getOffSet().getY()));
+			moveCamera = getGridY() + 1 >= Main.GRIDSIZE.getHeight() - Map.VIEW_LIMIT
+					&& getMap().isPointInMap(0, Main.GRIDSIZE.getHeight() + getMap().getOffSet().getY());
 			break;
 		case Keyboard.KEY_LEFT:
 			dir = LEFT;
-			moveCamera = getPositionInGrid().getX() - 1 < Map.VIEW_LIMIT
-					&& getMap().isPointInMap(new Point(getMap().getOffSet().getX() - 1, 0));
+			moveCamera = getGridX() - 1 < Map.VIEW_LIMIT
+					&& getMap().isPointInMap(getMap().getOffSet().getX() - 1, 0);
 			break;
 		default:
 			return;
 		}
 
-		if (System.currentTimeMillis() < nextMove)
+		if (getClock().getTick() < getActors().getNextMove(row()))
 			return;
 
-		Point oldPos = position();
-
 		face(dir);
 
 		if (!canMove(dir))
 			return;
 
-		setPosition(Util.addRelPoints(position(), new Point(0, 1), dir));
-		nextMove = System.currentTimeMillis() + 150;
+		setPosition(getX() + DX[dir], getY() + DY[dir]);
+		getActors().setNextMove(row(), getClock().getTick() + getClock().toTicks(150));
 
 		if (moveCamera)
-			getMap().moveView(getX() - oldPos.getX(), getY() - oldPos.getY());
+			getMap().moveView(DX[dir], DY[dir]);
+
+		pickUp(getMap().get(getX(), getY()));
 
-		List<Item> items = getMap().get(position()).getItems();
+	}
 
-		if (!items.isEmpty())
+	/**
+	 * Takes the items of the slot, as many as fit in the inventory.
+	 */
+	private void pickUp(Slot slot)
+	{
+		List<Item> items = slot.getItems();
+		for (int i = 0; i < items.size();)
 		{
-			for (ListIterator<Item> l = items.listIterator(); l.hasNext();)
-			{
-				if (addItem(l.next()))
-					l.remove();
-			}
+			Item item = items.get(i);
+			if (addItem(item))
+				slot.removeItem(item);
+			else
+				i++;
 		}
-
 	}
 
-	private void action(Point target)
+	private void action(int target)
 	{
-		if (!getMap().isPointInMap(target))
+		Slot slot = getMap().get(target); // packed position
+		if (slot == null)
 			return;
-		NPC npc = getMap().get(target).getNPC();
-		List<Item> items = getMap().get(target).getItems();
+		NPC npc = slot.getNPC();
 		if (npc != null)
 		{
 			npc.run();
-		} else if (!items.isEmpty())
+		} else
 		{
-			for (ListIterator<Item> i = items.listIterator(); i.hasNext();)
-			{
-				if (addItem(i.next()))
-					i.remove();
-			}
+			pickUp(slot);
 		}
 	}
 
 	protected void attack(int skill)
 	{
-		if (System.currentTimeMillis() < nextAtk)
+		if (getClock().getTick() < getActors().getNextAtk(row()))
 			return;
 		if (getMP() < 2)
 		{
@@ -213,12 +217,12 @@ public class Player extends SuperEntity
 
 	public double getAverageDamage()
 	{
-		return getStat(TOTAL + ATK.ID) * 2 + getStat(TOTAL + STR.ID);
+		return Formulas.getPlayerDamage().eval(getVariables());
 	}
 
 	public void delayAttack(int mili)
 	{
-		nextAtk = System.currentTimeMillis() + mili;
+		getActors().setNextAtk(row(), getClock().getTick() + getClock().toTicks(mili));
 	}
 
 	public void die()
@@ -232,7 +236,7 @@ public class Player extends SuperEntity
 
 		super.update();
 
-		if (System.currentTimeMillis() > invincibleTimer)
+		if (getClock().getTick() > getActors().getTimer(row())) // invincibility over
 			setInvincible(false);
 
 		if (MsgBoxManager.isActive())
@@ -245,7 +249,7 @@ public class Player extends SuperEntity
 		int keyDown = 0;
 		for (int key : moveKeys)
 		{
-			if (Keyboard.isKeyDown(key))
+			if (Input.isKeyDown(key))
 			{
 				keyDown = key;
 				keysDown++;
@@ -254,10 +258,10 @@ public class Player extends SuperEntity
 
 		if (keysDown == 1)
 		{
-			if (System.currentTimeMillis() > nextMove)
+			if (getClock().getTick() > getActors().getNextMove(row()))
 			{
 				move(keyDown);
-				nextMove = System.currentTimeMillis() + 200;
+				getActors().setNextMove(row(), getClock().getTick() + getClock().toTicks(200));
 			}
 		}
 
@@ -267,13 +271,8 @@ public class Player extends SuperEntity
 	{
 		if (isInvincible())
 		{
-			if (invincibleRenderCounter == 7)
-			{
-				invincibleRender = !invincibleRender;
-				invincibleRenderCounter = 0;
-			}
-			invincibleRenderCounter++;
-			if (invincibleRender)
+			// blink, derived from the tick so it does not depend on the frame rate
+			if ((getClock().getTick() / getClock().toTicks(BLINK_PERIOD)) % 2 == 1)
 				return;
 		}
 
@@ -285,88 +284,68 @@ public class Player extends SuperEntity
 	{
 		if (!isInvincible())
 		{
-			invincible = true;
-			invincibleTimer = System.currentTimeMillis() + 1000;
+			setInvincible(true);
+			getActors().setTimer(row(), getClock().getTick() + getClock().toTicks(1000));
 			return super.hit(damage);
 		}
 		return false;
 	}
 
-	public void useItem(Item item)
+	public void useItem(ItemStack stack)
 	{
-		if (item != null)
+		if (stack != null && stack.isUsable())
 		{
-			if (item instanceof UsableItem)
+			((UsableItem) stack.getItem()).use();
+			stack.add(-1);
+			if (stack.getQuantity() <= 0)
 			{
-				UsableItem i = (UsableItem) (item);
-				i.use();
-				i.setQuantity(i.getQuantity() - 1);
-				if (item.getQuantity() == 0)
-				{
-					removeItem(item);
-				}
+				removeItem(stack);
 			}
 		}
 	}
 
-	public void removeItem(Item item)
+	public void removeItem(ItemStack stack)
 	{
-		items.remove(item);
+		items.remove(stack);
 	}
 
-	public Item getItem(int id)
+	/**
+	 * Returns the stack of items with the given id in the inventory, or null.
+	 */
+	public ItemStack getItem(int id)
 	{
-		for (Item i : items)
-		{
-			if (i.id() == id)
-				return i;
-		}
-		return null;
+		return items.find(id);
 	}
 
+	/**
+	 * Puts the item in the inventory, as a stack. The item is not kept if it
+	 * is stackable, only its id and quantity. Returns false if there is no
+	 * room.
+	 */
 	public boolean addItem(Item i)
 	{
+		return addItem(ItemStack.of(i));
+	}
 
-		Item item = getItem(i.id());
-		if (item != null && !(item instanceof EquipItem))
-		{
-			item.add(i.getQuantity());
-			if (i.getQuantity() > 0)
-				UserInterface.sendNotification("You got an item: " + i.getName() + " x" + i.getQuantity() + ".");
-			return true;
-		}
-		if (items.size() < INV_LIMIT)
-		{
-			items.add(i);
-			if (i.getQuantity() > 0)
-				UserInterface.sendNotification("You got an item: " + i.getName() + " x" + i.getQuantity() + ".");
-			return true;
-		}
-		return false;
+	public boolean addItem(ItemStack stack)
+	{
+		if (!items.add(stack))
+			return false;
+		if (stack.getQuantity() > 0)
+			UserInterface.sendNotification("You got an item: " + stack.getName() + " x" + stack.getQuantity() + ".");
+		return true;
 	}
 
 	public void loseItem(int id, int amount)
 	{
-		if (hasItem(id, amount))
-		{
-			getItem(id).setQuantity(getItem(id).getQuantity() - amount);
-			if (amount > 0)
-				UserInterface.sendNotification("You lost an item: " + getItem(id).getName() + " x" + amount + ".");
-			if (getItem(id).getQuantity() <= 0)
-			{
-				items.remove(getItem(id));
-			}
-		}
+		ItemStack stack = getItem(id);
+		if (stack != null && items.remove(id, amount) && amount > 0)
+			UserInterface.sendNotification("You lost an item: " + stack.getName() + " x" + amount + ".");
 	}
 
 	public boolean hasItem(int ID, int quantity)
 	{
-		if (getItem(ID) != null)
-		{
-			if (getItem(ID).getQuantity() >= quantity)
-				return true;
-		}
-		return false;
+		return items.contains(ID, quantity);
 	}
 
 	public void gainExp(int amount)
@@ -387,13 +366,13 @@ public class Player extends SuperEntity
 
 	private void levelUp()
 	{
-		raiseStat(BASE + ATK.ID, 2);
 		level++;
 		UserInterface.sendNotification("LEVEL UP! You are now level " + getLevel());
-		stats.put(BASE + MAXHP.ID, getStat(BASE + MAXHP.ID) + 5);
-		stats.put(BASE + MAXMP.ID, getStat(BASE + MAXMP.ID) + 5);
-		setHP(getStat(TOTAL + MAXHP.ID));
-		setMP(getStat(TOTAL + MAXHP.ID));
+		double vars[] = getVariables();
+		for (int i = 0; i < Stat.COUNT; i++) // growth of the new level, from the stats before it
+			raiseStat(StatBlock.BASE, Stat.byID(i), (int) Math.round(Formulas.getGrowth(Stat.byID(i)).eval(vars)));
+		setHP(getStat(MAXHP));
+		setMP(getStat(MAXMP));
 	}
 
 	public void useMP(int amount)
@@ -422,7 +401,14 @@ public class Player extends SuperEntity
 
 	public int getExpReq()
 	{
-		return level * 10;
+		return (int) Formulas.getExpReq().eval(getVariables());
+	}
+
+	protected double[] getVariables()
+	{
+		double vars[] = super.getVariables();
+		vars[Formulas.LEVEL] = level;
+		return vars;
 	}
 
 	public int getLevel()
@@ -435,7 +421,7 @@ public class Player extends SuperEntity
 		return items.size();
 	}
 
-	public ArrayList<Item> getItems()
+	public ItemBag getItems()
 	{
 		return items;
 	}
@@ -470,30 +456,58 @@ public class Player extends SuperEntity
 
 	public void setInvincible(boolean b)
 	{
-		invincible = b;
+		getActors().setFlag(row(), ActorStore.INVINCIBLE, b);
 	}
 
 	public boolean isInvincible()
 	{
-		return invincible;
+		return getActors().hasFlag(row(), ActorStore.INVINCIBLE);
 	}
 
+	/**
+	 * Returns a stat by its code: <tt>BASE</tt>, <tt>EXTRA</tt> (equipment)
+	 * or <tt>TOTAL</tt> plus the ID of the stat.
+	 */
 	public int getStat(int stat)
 	{
-		if (stat >= 0x30)
+		switch (stat & 0xF0)
 		{
-			return getStat(stat - EXTRA) + getStat(stat - BASE);
+		case BASE:
+			return getStats().get(StatBlock.BASE, Stat.byID(stat & 0x0F));
+		case EXTRA:
+			return getStats().get(StatBlock.EQUIP, Stat.byID(stat & 0x0F));
+		default:
+			return getStat(Stat.byID(stat & 0x0F));
 		}
-		return stats.get(stat);
 	}
 
+	/**
+	 * Raises a <tt>BASE</tt> or <tt>EXTRA</tt> stat by its code. Totals can
+	 * not be raised.
+	 */
 	public void raiseStat(int stat, int amount)
 	{
-		if (stats.containsKey(stat))
+		switch (stat & 0xF0)
 		{
-			stats.put(stat, getStat(stat) + amount);
+		case BASE:
+			raiseStat(StatBlock.BASE, Stat.byID(stat & 0x0F), amount);
+			break;
+		case EXTRA:
+			raiseStat(StatBlock.EQUIP, Stat.byID(stat & 0x0F), amount);
+			break;
 		}
-		return;
+	}
+
+	/**
+	 * Keeps HP and MP within their maximum when it drops, e.g. when a buff
+	 * ends or an equip is removed.
+	 */
+	public void statChanged(Stat stat)
+	{
+		if (stat == MAXHP && getHP() > getStat(MAXHP))
+			setHP(getStat(MAXHP));
+		else if (stat == MAXMP && getMP() > getStat(MAXMP))
+			setMP(getStat(MAXMP));
 	}
 
 	public void addEquip(EquipItem equip)
@@ -501,10 +515,8 @@ public class Player extends SuperEntity
 		if (equips.get(equip.getType()) != null)
 			return;
 		equips.put(equip.getType(), equip);
-		raiseStat(EXTRA + MAXHP.ID, equip.getStat(MAXHP));
-		raiseStat(EXTRA + MAXMP.ID, equip.getStat(MAXMP));
-		raiseStat(EXTRA + ATK.ID, equip.getStat(ATK));
-		raiseStat(EXTRA + STR.ID, equip.getStat(STR));
+		for (int i = 0; i < Stat.COUNT; i++)
+			raiseStat(StatBlock.EQUIP, Stat.byID(i), equip.getStat(Stat.byID(i)));
 	}
 
 	public void removeEquip(EquipType type)
@@ -518,10 +530,8 @@ public class Player extends SuperEntity
 		if (!addItem(equip))
 			return;
 
-		raiseStat(EXTRA + MAXHP.ID, -equip.getStat(MAXHP));
-		raiseStat(EXTRA + MAXMP.ID, -equip.getStat(MAXMP));
-		raiseStat(EXTRA + ATK.ID, -equip.getStat(ATK));
-		raiseStat(EXTRA + STR.ID, -equip.getStat(STR));
+		for (int i = 0; i < Stat.COUNT; i++)
+			raiseStat(StatBlock.EQUIP, Stat.byID(i), -equip.getStat(Stat.byID(i)));
 
 		equips.put(type, null);
 	}
@@ -538,26 +548,22 @@ public class Player extends SuperEntity
 
 	public void setHP(int hp)
 	{
-		this.hp = hp;
-		if (getHP() > getStat(TOTAL + MAXHP.ID))
-			setHP(getStat(TOTAL + MAXHP.ID));
+		getActors().setHP(row(), Math.min(hp, getStat(MAXHP)));
 	}
 
 	public int getHP()
 	{
-		return hp;
+		return getActors().getHP(row());
 	}
 
 	public void setMP(int mp)
 	{
-		this.mp = mp;
-		if (getMP() > getStat(TOTAL + MAXMP.ID))
-			setMP(getStat(TOTAL + MAXMP.ID));
+		getActors().setMP(row(), Math.min(mp, getStat(MAXMP)));
 	}
 
 	public int getMP()
 	{
-		return mp;
+		return getActors().getMP(row());
 	}
 
 }
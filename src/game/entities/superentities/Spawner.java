@@ -1,59 +1,86 @@
 package game.entities.superentities;
 
+import game.Main;
 import game.structure.MapManager;
 
 import org.lwjgl.util.Point;
 
 /**
  * An object that spawns a monster in a position certain time after its monster
- * died.
+ * died. Spawners are not updated, the monster queues its spawner in the
+ * respawn queue of its map when it dies.
+ *
+ * @see game.structure.Map#queueRespawn(Spawner)
  */
 public class Spawner
 {
 
-	// TODO? change to its own thread?
-
 	private final Point position;
 	private int id;
-	private int respawnTime;
-	private long deadTime;
-	private boolean spawn = false;
-	private Monster currentMonster;
+	private int respawnTime; // in ticks
+	private long due; // tick in which the monster respawns
 
 	public Spawner(Monster monster, int respawnTime)
 	{
 		this.position = monster.position();
 		id = monster.id();
-		currentMonster = monster;
-		this.respawnTime = respawnTime;
+		this.respawnTime = Main.getClock().toTicks(respawnTime);
+		monster.setSpawner(this);
 	}
 
-	public void update()
+	/**
+	 * 
+	 * <br>
+	 * <b>monsterDied</b> <br>
+	 * <p>
+	 * <tt>public void monsterDied(Monster monster)</tt>
+	 * </p>
+	 * Called by the monster of <i>this</i> spawner when it dies. Keeps the
+	 * dead monster to be reused and queues the respawn in the map being
+	 * updated. <br>
+	 * <br>
+	 */
+	public void monsterDied(Monster monster)
 	{
-		if (currentMonster.isDead() && !spawn)
-		{
-			deadTime = System.currentTimeMillis();
-			spawn = true;
-		}
-
-		if (System.currentTimeMillis() > deadTime + respawnTime && spawn)
-		{
-			spawn();
-		}
+		due = Main.getClock().getTick() + respawnTime;
+		MapManager.getMap().getMonsterPool().release(monster);
+		MapManager.getMap().queueRespawn(this);
 	}
 
-	private void spawn()
+	/**
+	 * 
+	 * <br>
+	 * <b>spawn</b> <br>
+	 * <p>
+	 * <tt>public boolean spawn()</tt>
+	 * </p>
+	 * Spawns the monster if its position is free, reusing a dead monster of
+	 * the map when there is one. Otherwise moves the respawn one second later
+	 * and returns false, the map queues it again. <br>
+	 * <br>
+	 */
+	public boolean spawn()
 	{
-		if (MapManager.getMap().get(position).getStrongEntity() == null)
+		if (MapManager.getMap().isWalkable(position.getX(), position.getY()))
 		{
-			Monster monster = new Monster(id);
+			Monster monster = MapManager.getMap().getMonsterPool().acquire(id);
+			monster.setSpawner(this);
 			monster.setPosition(position);
-			currentMonster = monster;
-			spawn = false;
-		} else
-		{
-			deadTime += 1000; // retry in 1 second
+			return true;
 		}
+
+		due += Main.getClock().toTicks(1000); // retry in 1 second
+		return false;
+	}
+
+	public Point getPosition()
+	{
+		return position;
+	}
+
+	public long getDueTick()
+	{
+		return due;
 	}
 
-}
\ No newline at end of file
+}
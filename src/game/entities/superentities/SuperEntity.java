@@ -1,16 +1,23 @@
 package game.entities.superentities;
 
+import game.Main;
 import game.entities.Entity;
+import game.features.Formulas;
+import game.features.Modifier;
+import game.features.Modifiers;
 import game.features.Skill;
+import game.features.Stat;
+import game.features.StatBlock;
+import game.structure.ActorStore;
+import game.structure.Map;
 import game.structure.Slot;
+import game.util.GameRandom.Stream;
 import game.util.Util;
 
 import java.awt.Color;
 import java.awt.Font;
 import java.util.ArrayList;
-import java.util.Random;
 
-import org.lwjgl.util.Point;
 import org.newdawn.slick.opengl.Texture;
 
 /**
@@ -19,34 +26,106 @@ import org.newdawn.slick.opengl.Texture;
 public abstract class SuperEntity extends Entity
 {
 
-	private int damage, facing = DOWN;
+	private StatBlock stats = new StatBlock();
+	private Modifiers modifiers = new Modifiers(this, stats);
+	private double vars[] = new double[Formulas.VARIABLES]; // passed to the formulas, reused by every evaluation
+	private ActorStore actors; // the hot state (HP, facing, timers, flags) lives in the store of the map
+	private int handle;
 	private ArrayList<Skill> skills = new ArrayList<Skill>();
 	private ArrayList<Integer> damages = new ArrayList<Integer>(); // TODO
 																	// change to
 																	// queue
 	private ArrayList<Long> damageTime = new ArrayList<Long>();
 	private Texture textures[] = new Texture[4];
+	private boolean texturesLoaded = false;
 	public static final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3;
+	protected static final int DX[] = { 0, 1, 0, -1 }, DY[] = { -1, 0, 1, 0 }; // movement of each direction
 
 	public SuperEntity(int id)
 	{
 		super(id);
 		setStrong();
 
-		textures[UP] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/back.png");
-		textures[RIGHT] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/side.png");
-		textures[DOWN] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/front.png");
-		textures[LEFT] = textures[RIGHT];
+		Map map = getMap();
+		actors = map != null ? map.getActors() : new ActorStore(1); // not in a map yet, moved to one when added
+		handle = actors.create(this);
 
 		face(DOWN);
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>moveTo</b> <br>
+	 * <p>
+	 * <tt>public void moveTo(ActorStore target)</tt>
+	 * </p>
+	 * Moves the state of <i>this</i> superentity to the store of another map.
+	 * Called when it is added to a map it was not created in. <br>
+	 * <br>
+	 */
+	public void moveTo(ActorStore target)
+	{
+		if (target == actors)
+			return;
+		handle = handle != ActorStore.NONE ? actors.moveTo(handle, target) : target.create(this);
+		actors = target;
+	}
+
+	/**
+	 * Frees the row of <i>this</i> superentity in its store, once it is gone
+	 * for good (a monster that does not respawn). <tt>reset</tt> gives it a
+	 * new row if it is used again.
+	 */
+	protected void destroyRow()
+	{
+		actors.destroy(handle);
+		handle = ActorStore.NONE;
+	}
+
+	/**
+	 * Returns false if the row of <i>this</i> superentity was destroyed.
+	 */
+	protected boolean hasRow()
+	{
+		return handle != ActorStore.NONE;
+	}
+
+	/**
+	 * Returns the store holding the state of <i>this</i> superentity.
+	 */
+	protected ActorStore getActors()
+	{
+		return actors;
+	}
+
+	/**
+	 * Returns the row of <i>this</i> superentity in its store.
+	 */
+	protected int row()
+	{
+		return ActorStore.index(handle);
+	}
+
+	public int getHandle()
+	{
+		return handle;
+	}
+
 	/**
 	 * OVERRIDE getTexture() del Entity
 	 */
 	
 	public Texture getTexture()
 	{
+		if (!texturesLoaded && !Main.isHeadless()) // loaded on the first render
+		{
+			textures[UP] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/back.png");
+			textures[RIGHT] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/side.png");
+			textures[DOWN] = Util.getTexture(getClass().getSimpleName().toLowerCase() + "/" + hexID() + "/front.png");
+			textures[LEFT] = textures[RIGHT];
+			texturesLoaded = true;
+		}
 		return textures[getFacingDir()];
 	}
 	
@@ -76,7 +155,7 @@ public abstract class SuperEntity extends Entity
 
 		if (canMove(dir))
 		{
-			setPosition(Util.addRelPoints(position(), new Point(0, 1), dir));
+			setPosition(getX() + DX[dir], getY() + DY[dir]);
 			// TODO play move animation
 		}
 	}
@@ -85,30 +164,25 @@ public abstract class SuperEntity extends Entity
 	{
 		// check the slot were its gonna move so that it has no other strong
 		// entity
-		int xMove = 0;
-		int yMove = 0;
-
-		switch (dir)
-		{
-		case UP:
-			yMove--;
-			break;
-		case RIGHT:
-			xMove++;
-			break;
-		case DOWN:
-			yMove++;
-			break;
-		case LEFT:
-			xMove--;
-		}
-
-		Point targetPos = new Point(getX() + xMove, getY() + yMove);
-
-		if (getMap().isPointInMap(targetPos) && getMap().get(targetPos).getStrongEntity() == null)
-			return true;
+		return getMap().isWalkable(getX() + DX[dir], getY() + DY[dir]);
+	}
 
-		return false;
+	/**
+	 * 
+	 * <br>
+	 * <b>plan</b> <br>
+	 * <p>
+	 * <tt>public void plan()</tt>
+	 * </p>
+	 * First phase of the map update. Decides what <i>this</i> superentity
+	 * wants to do this tick (where to move, whether to attack) and stores it
+	 * to be applied by <tt>update()</tt>. Called concurrently with the other
+	 * actors of the map, so it must only read the map and change the state of
+	 * <i>this</i> superentity. Does nothing by default. <br>
+	 * <br>
+	 */
+	public void plan()
+	{
 	}
 
 	public void update()
@@ -121,8 +195,8 @@ public abstract class SuperEntity extends Entity
 
 	public void render()
 	{
-		Util.renderEntity(getTexture(), Util.pointArithmetic(-1, position(), getMap().getOffSet()), getRenderOffset(),
-				getRenderSize(), 0, getFacingDir() != LEFT ? 0 : 1, 0); //flip texture when facing left
+		Util.renderEntity(getTexture(), getGridX(), getGridY(), getRenderOffsetX(), getRenderOffsetY(), getRenderWidth(),
+				getRenderHeight(), 0, getFacingDir() != LEFT ? 0 : 1, 0); //flip texture when facing left
 		for (Skill s : skills)
 			s.render();
 	}
@@ -132,7 +206,7 @@ public abstract class SuperEntity extends Entity
 		// at an UI level
 		for (int i = 0; i < damages.size(); i++)
 		{
-			if (damageTime.get(i) > System.currentTimeMillis())
+			if (damageTime.get(i) > getClock().getMillis())
 			{
 				float xpos = (Util.getTextWidth(damages.get(i).toString()) - Slot.SIZE) / 2;
 				Util.useFont("Arial", Font.BOLD, 10, Color.white);
@@ -169,8 +243,13 @@ public abstract class SuperEntity extends Entity
 	public boolean hit(int damage)
 	{ // get hit
 		setHP(getHP() - damage);
+		while (!damageTime.isEmpty() && damageTime.get(0) <= getClock().getMillis())
+		{ // also expire here, the list is only pruned while rendering otherwise
+			damages.remove(0);
+			damageTime.remove(0);
+		}
 		damages.add(damage); // to render the damage
-		damageTime.add(System.currentTimeMillis() + 1700); // TODO? use thread?
+		damageTime.add(getClock().getMillis() + 1700); // TODO? use thread?
 		if (getHP() <= 0)
 		{
 			setHP(0);
@@ -181,6 +260,20 @@ public abstract class SuperEntity extends Entity
 		return false;
 	}
 
+	/**
+	 * Stops the skills, forgets the damages shown and faces down, as a newly
+	 * created superentity.
+	 */
+	protected void reset()
+	{
+		if (handle == ActorStore.NONE)
+			handle = actors.create(this);
+		modifiers.clear();
+		stopAllActions();
+		resetDamages();
+		face(DOWN);
+	}
+
 	protected void resetDamages()
 	{
 		damages.clear();
@@ -191,10 +284,11 @@ public abstract class SuperEntity extends Entity
 	{
 		for (Skill s : skills)
 			s.stopAll();
+		modifiers.clear();
 
 		if (!(this instanceof Player))
 		{ // TODO handle player dead
-			getMap().get(position()).removeStrongEntity();
+			getMap().get(getX(), getY()).removeStrongEntity();
 		}
 	}
 
@@ -215,31 +309,118 @@ public abstract class SuperEntity extends Entity
 
 	public int getDamage()
 	{ // returns a damage based on its average damage with a normal distribution
-		// with a 15% deviation
+		// with the deviation given by the damage formula
 		double avgDmg = getAverageDamage();
-		double deviation = avgDmg * .15;
-		double damage = new Random(System.nanoTime()).nextGaussian() * deviation + avgDmg;
+		double vars[] = getVariables();
+		vars[Formulas.AVERAGE] = avgDmg;
+		double deviation = Formulas.getDamageDeviation().eval(vars);
+		double damage = getRandom(Stream.COMBAT).nextGaussian() * deviation + avgDmg;
 		return (int) (damage + .5); // +.5 to round and not truncate
 	}
 
 	protected double getAverageDamage()
 	{
-		return damage; // overrode by the player to depend on its stats
+		return getStat(Stat.ATK); // overrode by the player to depend on its other stats
 	}
 
 	public void setDamage(int damage)
 	{
-		this.damage = damage;
+		setStat(StatBlock.BASE, Stat.ATK, damage);
+	}
+
+	/**
+	 * Returns the total of the stat, with the equipment and modifiers.
+	 */
+	public int getStat(Stat stat)
+	{
+		return stats.get(stat);
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>setStat</b> <br>
+	 * <p>
+	 * <tt>protected void setStat(int layer, Stat stat, int value)</tt>
+	 * </p>
+	 * Sets the value of the stat in the <tt>BASE</tt> or <tt>EQUIP</tt>
+	 * layer. The modifiers multiplying the stat are applied to the new value.
+	 * <br>
+	 * <br>
+	 * 
+	 * @see StatBlock
+	 */
+	protected void setStat(int layer, Stat stat, int value)
+	{
+		if (stats.get(layer, stat) == value)
+			return;
+		stats.set(layer, stat, value);
+		modifiers.update(stat);
+		statChanged(stat);
+	}
+
+	protected void raiseStat(int layer, Stat stat, int amount)
+	{
+		setStat(layer, stat, stats.get(layer, stat) + amount);
+	}
+
+	/**
+	 * Returns the variables of the formulas for <i>this</i> superentity, its
+	 * current stats. The array is reused by every call.
+	 * 
+	 * @see Formulas
+	 */
+	protected double[] getVariables()
+	{
+		for (int i = 0; i < Stat.COUNT; i++)
+			vars[i] = stats.get(Stat.byID(i));
+		return vars;
+	}
+
+	/**
+	 * Called when the total of a stat changes, by the equipment, a modifier or
+	 * its base value. Does nothing by default.
+	 */
+	public void statChanged(Stat stat)
+	{
+	}
+
+	public StatBlock getStats()
+	{
+		return stats;
+	}
+
+	public Modifiers getModifiers()
+	{
+		return modifiers;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>addModifier</b> <br>
+	 * <p>
+	 * <tt>public boolean addModifier(Modifier modifier)</tt>
+	 * </p>
+	 * Applies the modifier to <i>this</i> superentity. Returns false if
+	 * another modifier from the same source kept it from being applied. <br>
+	 * <br>
+	 * 
+	 * @see Modifier.Stacking
+	 */
+	public boolean addModifier(Modifier modifier)
+	{
+		return modifiers.add(modifier);
 	}
 
 	public int getFacingDir()
 	{
-		return facing;
+		return actors.getFacing(row());
 	}
 
 	public void setFacing(int dir)
 	{
-		facing = dir;
+		actors.setFacing(row(), dir);
 	}
 
 	public void stopAllActions()
@@ -0,0 +1,189 @@
+package game.features;
+
+import game.util.Formula;
+import game.util.XMLParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The balance formulas of the game, read from <tt>data/formulas.xml</tt> when
+ * the game starts and compiled once, so they can be tuned without changing
+ * the code and cost no parsing when a hit is done. A formula missing from the
+ * file keeps its default.
+ * <p>
+ * The formulas read the variables from an array indexed by the constants of
+ * this class: each stat by its ID (named as in <tt>Stat</tt>, e.g.
+ * <tt>ATK</tt>), <tt>LEVEL</tt> and <tt>AVERAGE</tt>, the average damage. The
+ * tables in the file (a number per line) can be used as functions.
+ *
+ * @see Formula
+ */
+public class Formulas
+{
+
+	public static final int LEVEL = Stat.values().length, AVERAGE = LEVEL + 1, VARIABLES = AVERAGE + 1; // variable indexes
+
+	private static final Map<String, Integer> variables = new HashMap<String, Integer>();
+	private static final Map<String, int[]> tables = new HashMap<String, int[]>();
+
+	private static Formula playerDamage, damageDeviation, expReq;
+	private static Formula growth[] = new Formula[Stat.values().length]; // base stats gained per level, by stat ID
+
+	static
+	{
+		for (Stat stat : Stat.values())
+			variables.put(stat.name(), stat.ID);
+		variables.put("LEVEL", LEVEL);
+		variables.put("AVERAGE", AVERAGE);
+
+		playerDamage = compile("ATK * 2 + STR");
+		damageDeviation = compile("AVERAGE * 0.15");
+		expReq = compile("LEVEL * 10");
+		for (Stat stat : Stat.values())
+			growth[stat.ID] = Formula.constant(0);
+		growth[Stat.ATK.ID] = Formula.constant(2);
+		growth[Stat.MAXHP.ID] = Formula.constant(5);
+		growth[Stat.MAXMP.ID] = Formula.constant(5);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>load</b> <br>
+	 * <p>
+	 * <tt>public static void load(String fileName)</tt>
+	 * </p>
+	 * Reads and compiles the tables and formulas of the file in the data
+	 * folder. Throws IllegalArgumentException if a formula is not valid or a
+	 * table is missing or empty, so a mistake is found when the game starts.
+	 * <br>
+	 * <br>
+	 */
+	public static void load(String fileName)
+	{
+		if (!new File("data/" + fileName).exists())
+			return;
+
+		XMLParser parser = new XMLParser(fileName);
+
+		// the tables first, the formulas may use them
+		for (Map<String, String> table : parser.getChildrenAttributes("Formulas/tables"))
+		{
+			if (table.get("file") == null)
+				throw new IllegalArgumentException("Table " + table.get("name") + " has no file in " + fileName);
+			tables.put(table.get("name"), readTable(table.get("file")));
+		}
+
+		for (Map<String, String> formula : parser.getChildrenAttributes("Formulas/formulas"))
+		{
+			String name = formula.get("name");
+			Formula compiled = compile(formula.get("value"));
+			if (name.equals("playerDamage"))
+				playerDamage = compiled;
+			else if (name.equals("damageDeviation"))
+				damageDeviation = compiled;
+			else if (name.equals("expReq"))
+				expReq = compiled;
+			else
+				throw new IllegalArgumentException("Unknown formula " + name + " in " + fileName);
+		}
+
+		for (Map<String, String> stat : parser.getChildrenAttributes("Formulas/growth"))
+			growth[Stat.valueOf(stat.get("name")).ID] = compile(stat.get("value"));
+	}
+
+	private static Formula compile(String source)
+	{
+		return Formula.compile(source, variables, tables);
+	}
+
+	/**
+	 * Reads a table of integers, one per line, from a file in the data
+	 * folder. Throws IllegalArgumentException if it can not be read or has no
+	 * values, a formula could not index it.
+	 */
+	private static int[] readTable(String fileName)
+	{
+		List<Integer> values = new ArrayList<Integer>();
+		try
+		{
+			BufferedReader reader = new BufferedReader(new FileReader("data/" + fileName));
+			try
+			{
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					if (!line.trim().isEmpty())
+						values.add(Integer.parseInt(line.trim()));
+				}
+			} finally
+			{
+				reader.close();
+			}
+		} catch (IOException e)
+		{
+			throw new IllegalArgumentException("Table " + fileName + " can not be read", e);
+		} catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Table " + fileName + " has a value that is not an integer", e);
+		}
+
+		if (values.isEmpty())
+			throw new IllegalArgumentException("Table " + fileName + " is empty");
+
+		int table[] = new int[values.size()];
+		for (int i = 0; i < table.length; i++)
+			table[i] = values.get(i);
+		return table;
+	}
+
+	/**
+	 * Returns the table with the given name, or null if there is none.
+	 */
+	public static int[] getTable(String name)
+	{
+		return tables.get(name);
+	}
+
+	/**
+	 * The average damage of the player.
+	 */
+	public static Formula getPlayerDamage()
+	{
+		return playerDamage;
+	}
+
+	/**
+	 * The standard deviation of the damage of a hit, from its
+	 * <tt>AVERAGE</tt>.
+	 */
+	public static Formula getDamageDeviation()
+	{
+		return damageDeviation;
+	}
+
+	/**
+	 * The exp the player needs to reach the next level.
+	 */
+	public static Formula getExpReq()
+	{
+		return expReq;
+	}
+
+	/**
+	 * The base value of the stat the player gains when reaching a new
+	 * <tt>LEVEL</tt>.
+	 */
+	public static Formula getGrowth(Stat stat)
+	{
+		return growth[stat.ID];
+	}
+
+}
@@ -0,0 +1,98 @@
+package game.features;
+
+import game.util.Scheduler;
+
+/**
+ * A temporary (or permanent) change to a stat of a superentity: a potion, a
+ * skill buff, a debuff on a monster. A modifier either adds a flat amount or
+ * multiplies the stat by 1 + its value (0.2 for +20%), and knows what
+ * applied it so applying the same effect again follows its stacking rule.
+ * <p>
+ * A modifier is applied once, create a new one to apply the effect again.
+ *
+ * @see Modifiers
+ */
+public class Modifier
+{
+
+	/**
+	 * How the value of a modifier changes the stat.
+	 */
+	public enum Type
+	{
+		ADD, MULTIPLY;
+	}
+
+	/**
+	 * What happens when a modifier is applied while another one with the
+	 * same source and stat is active.
+	 */
+	public enum Stacking
+	{
+		STACK, // both are active
+		REFRESH, // the new one replaces the old one, restarting the duration
+		IGNORE; // the old one stays, the new one is not applied
+	}
+
+	private final Stat stat;
+	private final Type type;
+	private final double value;
+	private final String source;
+	private final int duration; // in ticks, 0 until it is removed
+	private final Stacking stacking;
+	Scheduler.Task expiry; // set by Modifiers while it is active
+
+	/**
+	 * @param duration
+	 *            - Ticks it lasts, 0 to last until it is removed.
+	 */
+	public Modifier(Stat stat, Type type, double value, String source, int duration, Stacking stacking)
+	{
+		this.stat = stat;
+		this.type = type;
+		this.value = value;
+		this.source = source;
+		this.duration = duration;
+		this.stacking = stacking;
+	}
+
+	public Stat getStat()
+	{
+		return stat;
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	public double getValue()
+	{
+		return value;
+	}
+
+	public String getSource()
+	{
+		return source;
+	}
+
+	public int getDuration()
+	{
+		return duration;
+	}
+
+	public Stacking getStacking()
+	{
+		return stacking;
+	}
+
+	/**
+	 * Returns the tick in which the modifier ends, or -1 if it is not active
+	 * or does not end by itself.
+	 */
+	public long getExpiryTick()
+	{
+		return expiry != null ? expiry.getDueTick() : -1;
+	}
+
+}
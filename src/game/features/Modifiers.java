@@ -0,0 +1,212 @@
+package game.features;
+
+import game.entities.superentities.SuperEntity;
+import game.structure.GameObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The modifiers active on a superentity. Their result is kept in the bonus
+ * layer of its stat block: when a modifier starts or ends only the total of
+ * its stat is computed again, and reading a stat costs the same with or
+ * without modifiers. Modifiers with a duration end through the scheduler, no
+ * one goes over them every tick.
+ * <p>
+ * The bonus of a stat is its flat modifiers plus the base and equipment
+ * values and flat modifiers multiplied by the sum of its multiplying
+ * modifiers.
+ *
+ * @see Modifier
+ * @see StatBlock#BONUS
+ */
+public class Modifiers
+{
+
+	private final SuperEntity owner;
+	private final StatBlock stats;
+	private final List<Modifier> active[] = newLists(Stat.values().length); // by stat ID, created when first used
+
+	public Modifiers(SuperEntity owner, StatBlock stats)
+	{
+		this.owner = owner;
+		this.stats = stats;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List<Modifier>[] newLists(int length)
+	{
+		return new List[length];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>add</b> <br>
+	 * <p>
+	 * <tt>public boolean add(Modifier modifier)</tt>
+	 * </p>
+	 * Applies the modifier, following its stacking rule if one with the same
+	 * source is active on the stat. Returns false if it was not applied. <br>
+	 * <br>
+	 */
+	public boolean add(final Modifier modifier)
+	{
+		if (modifier.expiry != null || contains(modifier))
+			throw new IllegalStateException("The modifier is already applied.");
+
+		Stat stat = modifier.getStat();
+		if (active[stat.ID] == null)
+			active[stat.ID] = new ArrayList<Modifier>(2);
+		List<Modifier> list = active[stat.ID];
+
+		if (modifier.getStacking() != Modifier.Stacking.STACK)
+		{
+			for (int i = 0; i < list.size(); i++)
+			{
+				Modifier other = list.get(i);
+				if (!other.getSource().equals(modifier.getSource()))
+					continue;
+				if (modifier.getStacking() == Modifier.Stacking.IGNORE)
+					return false;
+				stop(other); // REFRESH
+				list.remove(i--);
+			}
+		}
+
+		list.add(modifier);
+		if (modifier.getDuration() > 0)
+		{
+			modifier.expiry = GameObject.getScheduler().schedule(new Runnable()
+			{
+				public void run()
+				{
+					remove(modifier);
+				}
+			}, modifier.getDuration());
+		}
+
+		recompute(stat);
+		return true;
+	}
+
+	/**
+	 * Ends the modifier before its time.
+	 */
+	public void remove(Modifier modifier)
+	{
+		List<Modifier> list = active[modifier.getStat().ID];
+		if (list == null || !list.remove(modifier))
+			return;
+
+		stop(modifier);
+		recompute(modifier.getStat());
+	}
+
+	/**
+	 * Ends every modifier applied by <i>source</i>.
+	 */
+	public void removeSource(String source)
+	{
+		for (int id = 0; id < Stat.COUNT; id++)
+		{
+			Stat stat = Stat.byID(id);
+			List<Modifier> list = active[id];
+			if (list == null)
+				continue;
+
+			boolean changed = false;
+			for (int i = list.size() - 1; i >= 0; i--)
+			{
+				if (list.get(i).getSource().equals(source))
+				{
+					stop(list.remove(i));
+					changed = true;
+				}
+			}
+			if (changed)
+				recompute(stat);
+		}
+	}
+
+	/**
+	 * Ends every modifier, e.g. when a monster dies.
+	 */
+	public void clear()
+	{
+		for (int id = 0; id < Stat.COUNT; id++)
+		{
+			Stat stat = Stat.byID(id);
+			List<Modifier> list = active[id];
+			if (list == null || list.isEmpty())
+				continue;
+
+			for (int i = 0; i < list.size(); i++)
+				stop(list.get(i));
+			list.clear();
+			recompute(stat);
+		}
+	}
+
+	public boolean contains(Modifier modifier)
+	{
+		List<Modifier> list = active[modifier.getStat().ID];
+		return list != null && list.contains(modifier);
+	}
+
+	/**
+	 * Returns the modifiers active on the stat. The list must not be changed.
+	 */
+	public List<Modifier> get(Stat stat)
+	{
+		List<Modifier> list = active[stat.ID];
+		return list != null ? list : Collections.<Modifier> emptyList();
+	}
+
+	private void stop(Modifier modifier)
+	{
+		if (modifier.expiry != null)
+		{
+			modifier.expiry.cancel();
+			modifier.expiry = null;
+		}
+	}
+
+	/**
+	 * Computes the bonus of the stat again from its modifiers and tells the
+	 * owner if the total changed.
+	 */
+	private void recompute(Stat stat)
+	{
+		double flat = 0, multiplier = 0;
+		List<Modifier> list = active[stat.ID];
+		for (int i = 0; i < list.size(); i++)
+		{
+			Modifier modifier = list.get(i);
+			if (modifier.getType() == Modifier.Type.ADD)
+				flat += modifier.getValue();
+			else
+				multiplier += modifier.getValue();
+		}
+
+		int base = stats.get(StatBlock.BASE, stat) + stats.get(StatBlock.EQUIP, stat);
+		int bonus = (int) Math.round(flat + (base + flat) * multiplier);
+		if (bonus == stats.get(StatBlock.BONUS, stat))
+			return;
+
+		stats.set(StatBlock.BONUS, stat, bonus);
+		owner.statChanged(stat);
+	}
+
+	/**
+	 * Computes the bonus of the stat again after its base or equipment value
+	 * changed, for the multiplying modifiers.
+	 */
+	public void update(Stat stat)
+	{
+		if (active[stat.ID] != null && !active[stat.ID].isEmpty())
+			recompute(stat);
+	}
+
+}
@@ -1,6 +1,6 @@
 package game.features;
 
-import game.entities.item.Item;
+import game.entities.item.ItemStack;
 import game.structure.GameObject;
 import game.ui.UserInterface;
 import game.util.XMLParser;
@@ -24,8 +24,7 @@ public class Quest extends GameObject
 	private String NAME, DESCRIPTION;
 	private Map<Integer, List<Integer>> monsterKills = new HashMap<Integer, List<Integer>>(); 
 	private boolean turnedIn = false;
-	private Map<Integer, Integer> requiredItems = new HashMap<Integer, Integer>();
-	private ArrayList<Item> itemsNeeded = new ArrayList<Item>(), itemReward = new ArrayList<Item>();
+	private ArrayList<ItemStack> itemsNeeded = new ArrayList<ItemStack>(), itemReward = new ArrayList<ItemStack>();
 	private int requiredGold = 0, goldReward = 0, expReward = 0;
 
 	public Quest(int id)
@@ -51,7 +50,7 @@ public class Quest extends GameObject
 		List<Map<String, String>> reqItems = parser.getChildrenAttributes("Quest/requirements/items");
 		for (Map<String, String> attributes : reqItems)
 		{
-			requiredItems.put(Integer.parseInt(attributes.get("id"), 16), Integer.parseInt(attributes.get("amount")));
+			addStacks(itemsNeeded, Integer.parseInt(attributes.get("id"), 16), Integer.parseInt(attributes.get("amount")));
 		}
 
 		requiredGold = Integer.parseInt(parser.getAttribute("Quest/requirements/gold", "amount"));
@@ -63,10 +62,37 @@ public class Quest extends GameObject
 		List<Map<String, String>> itemRewards = parser.getChildrenAttributes("Quest/rewards/items");
 		for (Map<String, String> attributes : itemRewards)
 		{
-			requiredItems.put(Integer.parseInt(attributes.get("id"), 16), Integer.parseInt(attributes.get("amount")));
+			addStacks(itemReward, Integer.parseInt(attributes.get("id"), 16), Integer.parseInt(attributes.get("amount")));
 		}
 	}
 
+	/**
+	 * Adds <i>amount</i> items with the given id to the list: a single stack,
+	 * or a stack for each equip since equips do not stack.
+	 */
+	private static void addStacks(List<ItemStack> stacks, int id, int amount)
+	{
+		ItemStack stack = ItemStack.create(id, amount);
+		stacks.add(stack);
+		for (int i = stack.getQuantity(); i < amount; i++)
+			stacks.add(ItemStack.create(id, 1));
+	}
+
+	/**
+	 * Returns how many items with the given id the quest needs, adding the
+	 * stacks of equips.
+	 */
+	private int getAmountNeeded(int id)
+	{
+		int amount = 0;
+		for (ItemStack i : itemsNeeded)
+		{
+			if (i.id() == id)
+				amount += i.getQuantity();
+		}
+		return amount;
+	}
+
 	public void monsterKill(int id)
 	{
 		if (!isTurnedIn())
@@ -115,9 +141,9 @@ public class Quest extends GameObject
 
 		boolean complete = true;
 
-		for (Item i : itemsNeeded)
+		for (ItemStack i : itemsNeeded)
 		{
-			if (!getMap().getPlayer().hasItem(i.id(), i.getQuantity()))
+			if (!getMap().getPlayer().hasItem(i.id(), getAmountNeeded(i.id())))
 			{
 				complete = false;
 			}
@@ -156,7 +182,7 @@ public class Quest extends GameObject
 		return DESCRIPTION;
 	}
 
-	public ArrayList<Item> getItemsNeeded()
+	public ArrayList<ItemStack> getItemsNeeded()
 	{
 		return itemsNeeded;
 	}
@@ -171,7 +197,7 @@ public class Quest extends GameObject
 		if (!isCompleted())
 			return;
 
-		for (Item i : itemsNeeded)
+		for (ItemStack i : itemsNeeded)
 		{
 			getMap().getPlayer().loseItem(i.id(), i.getQuantity());
 		}
@@ -180,9 +206,9 @@ public class Quest extends GameObject
 		getMap().getPlayer().gainGold(goldReward);
 		getMap().getPlayer().gainExp(expReward);
 
-		for (Item i : itemReward)
+		for (ItemStack i : itemReward)
 		{
-			getMap().getPlayer().addItem(i);
+			getMap().getPlayer().addItem(i.copy());
 		}
 
 		turnedIn = true;
@@ -1,5 +1,6 @@
 package game.features;
 
+import game.Main;
 import game.entities.superentities.SuperEntity;
 import game.structure.GameObject;
 import game.util.SubImage;
@@ -23,6 +24,7 @@ public class Skill extends GameObject
 {
 
 	private SubImage sprites[]; // each frame of the animation
+	private boolean spritesLoaded = false; // the sprite sheet is loaded on the first render
 	private int level = 1; // level of the skill
 	private int maxLevel;
 	private int delay;
@@ -57,10 +59,9 @@ public class Skill extends GameObject
 		List<Map<String, String>> coordinates = parser.getChildrenAttributes("Coordinates");
 
 		sprites = new SubImage[coordinates.size()];
-		Texture spriteSheet = Util.getTexture("skill/" + hexID() + "/texture.png");
 
 		for (int i = 0; i < sprites.length; i++)
-			sprites[i] = new SubImage(spriteSheet, new Point(Integer.parseInt(coordinates.get(i).get("x")),
+			sprites[i] = new SubImage(null, new Point(Integer.parseInt(coordinates.get(i).get("x")),
 															 Integer.parseInt(coordinates.get(i).get("y"))), size);
 
 	}
@@ -129,6 +130,13 @@ public class Skill extends GameObject
 
 	public SubImage[] getSprites()
 	{
+		if (!spritesLoaded && !Main.isHeadless())
+		{
+			Texture spriteSheet = Util.getTexture("skill/" + hexID() + "/texture.png");
+			for (SubImage sprite : sprites)
+				sprite.setTexture(spriteSheet);
+			spritesLoaded = true;
+		}
 		return sprites;
 	}
 
@@ -1,5 +1,6 @@
 package game.features;
 
+import game.Main;
 import game.scripting.SkillActionManager;
 import game.structure.Slot;
 
@@ -18,8 +19,8 @@ import org.lwjgl.util.Point;
 public class SkillAttack
 {
 
-	private long time = System.currentTimeMillis();
-	private double delay = 50;
+	private long time = Main.getClock().getTick(); // tick of the last script step
+	private int delay = Main.getClock().toTicks(50); // ticks between script steps
 	private int step = 0;
 	private boolean active = true;
 	private int state = 0;
@@ -44,14 +45,7 @@ public class SkillAttack
 	public void render()
 	{
 		if (playAnimation)
-		{
-			skill.getSprites()[state++].render(renderPos.getX() * Slot.SIZE, renderPos.getY() * Slot.SIZE, (facingDir + 3) % 4);
-			if (state == skill.getSprites().length)
-			{
-				state = 0;
-				playAnimation = false;
-			}
-		}
+			skill.getSprites()[state].render(renderPos.getX() * Slot.SIZE, renderPos.getY() * Slot.SIZE, (facingDir + 3) % 4);
 	}
 
 	public void play(Point position)
@@ -62,11 +56,18 @@ public class SkillAttack
 
 	public void update()
 	{
-		// the skill script is called every 6 frames (.1 seconds) and passed the
+		// the animation advances one sprite per tick
+		if (playAnimation && ++state == skill.getSprites().length)
+		{
+			state = 0;
+			playAnimation = false;
+		}
+
+		// the skill script is called every 50 milliseconds and passed the
 		// variable "step" to determine how long it has been running
-		if (System.currentTimeMillis() > time + delay)
+		if (Main.getClock().getTick() > time + delay)
 		{
-			time = System.currentTimeMillis();
+			time = Main.getClock().getTick();
 			try
 			{
 				engine.put("step", step);
@@ -5,8 +5,16 @@ public enum Stat
 
 	MAXHP(0x00, "MaxHP"), MAXMP(0x01, "Max MP"), ATK(0x02, "Attack"), STR(0x03, "Strength");
 
+	public static final int COUNT = values().length; // loop up to it with byID, values() copies the array every call
 	public final int ID;
 	public final String NAME;
+	private static final Stat BY_ID[] = new Stat[values().length]; // the IDs go from 0 up without gaps
+
+	static
+	{
+		for (Stat s : values())
+			BY_ID[s.ID] = s;
+	}
 
 	private Stat(int id, String name)
 	{
@@ -14,6 +22,14 @@ public enum Stat
 		NAME = name;
 	}
 
+	/**
+	 * Returns the stat with the given ID without searching.
+	 */
+	public static Stat byID(int id)
+	{
+		return BY_ID[id];
+	}
+
 	public Stat getStat(int id)
 	{
 		for (Stat s : Stat.values())
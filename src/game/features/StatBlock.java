@@ -0,0 +1,56 @@
+package game.features;
+
+/**
+ * The stats of a superentity, in layers added together: the base stats, the
+ * stats given by the equipment and the bonuses of temporary effects. The total
+ * of each stat is kept up to date when a layer changes, so reading a stat is a
+ * single array load however often it is done (the HUD reads them every
+ * frame).
+ * <p>
+ * Stats are indexed by <tt>Stat.ID</tt>.
+ */
+public class StatBlock
+{
+
+	public static final int BASE = 0, EQUIP = 1, BONUS = 2; // layers
+	private static final int LAYERS = 3;
+
+	private final int layers[][] = new int[LAYERS][Stat.values().length];
+	private final int totals[] = new int[Stat.values().length];
+
+	/**
+	 * Returns the total of the stat, the sum of its layers.
+	 */
+	public int get(Stat stat)
+	{
+		return totals[stat.ID];
+	}
+
+	public int get(int layer, Stat stat)
+	{
+		return layers[layer][stat.ID];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>set</b> <br>
+	 * <p>
+	 * <tt>public void set(int layer, Stat stat, int value)</tt>
+	 * </p>
+	 * Sets the value of the stat in a layer and updates its total. <br>
+	 * <br>
+	 */
+	public void set(int layer, Stat stat, int value)
+	{
+		totals[stat.ID] += value - layers[layer][stat.ID];
+		layers[layer][stat.ID] = value;
+	}
+
+	public void raise(int layer, Stat stat, int amount)
+	{
+		layers[layer][stat.ID] += amount;
+		totals[stat.ID] += amount;
+	}
+
+}
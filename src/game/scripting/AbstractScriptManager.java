@@ -1,8 +1,11 @@
 package game.scripting;
 
 import game.entities.superentities.Player;
+import game.features.Modifier;
 import game.features.Stat;
+import game.structure.GameObject;
 import game.structure.MapManager;
+import game.structure.Path;
 
 import org.lwjgl.util.Point;
 
@@ -25,7 +28,7 @@ public abstract class AbstractScriptManager
 
 	public int getMaxHP()
 	{
-		return getPlayer().getStat(Player.TOTAL + Stat.MAXHP.ID);
+		return getPlayer().getStat(Stat.MAXHP);
 	}
 
 	public void setMP(int mp)
@@ -40,12 +43,12 @@ public abstract class AbstractScriptManager
 
 	public int getMaxMP()
 	{
-		return getPlayer().getStat(Player.TOTAL + Stat.MAXMP.ID);
+		return getPlayer().getStat(Stat.MAXMP);
 	}
 
 	public void setMap(int id, Point p)
 	{
-		MapManager.setMap(id, p);
+		MapManager.requestMap(id, p);
 	}
 
 	public int getMapID()
@@ -53,6 +56,15 @@ public abstract class AbstractScriptManager
 		return MapManager.getMap().id();
 	}
 
+	/**
+	 * Returns the shortest path between two slots of the current map, or null
+	 * if there is none.
+	 */
+	public Path findPath(int fromX, int fromY, int toX, int toY)
+	{
+		return MapManager.getMap().getPathFinder().find(fromX, fromY, toX, toY);
+	}
+
 	public String getMapName()
 	{
 		return MapManager.getMap().getName();
@@ -63,6 +75,40 @@ public abstract class AbstractScriptManager
 		getPlayer().gainGold(amount);
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>buff</b> <br>
+	 * <p>
+	 * <tt>public boolean buff(String stat, double value, boolean percent, int millis, String source)</tt>
+	 * </p>
+	 * Changes a stat of the player (by its name, e.g. "ATK") for
+	 * <i>millis</i> milliseconds, 0 to last until it is removed. The value
+	 * is added to the stat, or a fraction of the stat if <i>percent</i> (0.2
+	 * for +20%). Using the same source again restarts the buff instead of
+	 * stacking it. <br>
+	 * <br>
+	 */
+	public boolean buff(String stat, double value, boolean percent, int millis, String source)
+	{
+		return getPlayer().addModifier(createModifier(stat, value, percent, millis, source));
+	}
+
+	/**
+	 * Removes the buffs of the player with the given source.
+	 */
+	public void removeBuffs(String source)
+	{
+		getPlayer().getModifiers().removeSource(source);
+	}
+
+	protected Modifier createModifier(String stat, double value, boolean percent, int millis, String source)
+	{
+		return new Modifier(Stat.valueOf(stat.toUpperCase()), percent ? Modifier.Type.MULTIPLY : Modifier.Type.ADD,
+				value, source, millis > 0 ? Math.max(1, GameObject.getClock().toTicks(millis)) : 0,
+				Modifier.Stacking.REFRESH);
+	}
+
 	protected Player getPlayer()
 	{
 		return MapManager.getMap().getPlayer();
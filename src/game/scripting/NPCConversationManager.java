@@ -1,5 +1,6 @@
 package game.scripting;
 
+import game.entities.NPC;
 import game.features.Quest;
 import game.ui.MsgBoxManager;
 import game.ui.Shop;
@@ -30,6 +31,14 @@ public class NPCConversationManager extends AbstractScriptManager
 		MsgBoxManager.setYesNo(stateYes, stateNo);
 	}
 
+	/**
+	 * Makes the NPC talking walk to the given slot.
+	 */
+	public void walkTo(int x, int y)
+	{
+		NPC.getNpc().walkTo(x, y);
+	}
+
 	public int getState()
 	{
 		return state;
@@ -45,10 +45,14 @@ public class PortalActionManager extends AbstractScriptManager
 		return getPortal().getX();
 	}
 
+	/**
+	 * Moves the player to the portal with the same id in the map with the
+	 * given id. The move happens once the current tick has finished updating
+	 * the maps.
+	 */
 	public void setMap(int id)
 	{
-		super.setMap(id, new Point(0, 0));
-		setPosition(MapManager.getMap().getPortalByID(getID()).position());
+		MapManager.requestMapAtPortal(id, getID());
 	}
 
 	public void setPortal(Portal portal)
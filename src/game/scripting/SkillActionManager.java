@@ -2,6 +2,7 @@ package game.scripting;
 
 import game.entities.superentities.Monster;
 import game.entities.superentities.Player;
+import game.entities.superentities.SuperEntity;
 import game.features.SkillAttack;
 import game.structure.Map;
 import game.structure.MapManager;
@@ -43,13 +44,37 @@ public class SkillActionManager extends AbstractScriptManager
 				}
 			} else if (activeAttack.getSkill().getAttacker() instanceof Monster)
 			{
-				if (getPlayer().position().equals(pos))
+				if (getPlayer() != null && getPlayer().position().equals(pos))
 					getPlayer().hit((int) (activeAttack.getSkill().getAttacker().getDamage() * dmg + .5f));
 			}
 
 		}
 	}
 
+	/**
+	 * Changes a stat of the target at the given slot (relative to the
+	 * attacker) for <i>millis</i> milliseconds, as <tt>buff</tt> does for the
+	 * player. Casting the skill again on the same target restarts it. Returns
+	 * false if there is no target there.
+	 */
+	public boolean affect(Point p, String stat, double value, boolean percent, int millis)
+	{
+		Point pos = Util.addRelPoints(origin, p, facingDir);
+		SuperEntity target = null;
+		if (activeAttack.getSkill().getAttacker() instanceof Player)
+		{
+			Slot s = MapManager.getMap().get(pos);
+			if (s != null)
+				target = s.getMonster();
+		} else if (getPlayer() != null && getPlayer().position().equals(pos))
+			target = getPlayer();
+
+		if (target == null)
+			return false;
+		target.addModifier(createModifier(stat, value, percent, millis, "skill " + activeAttack.getSkill().id()));
+		return true;
+	}
+
 	public void stop()
 	{
 		activeAttack.stop();
@@ -64,24 +89,19 @@ public class SkillActionManager extends AbstractScriptManager
 	{
 		if (activeAttack.getSkill().getAttacker() instanceof Player)
 		{
-			Point pos = Util.addRelPoints(origin, p, facingDir);
-			for (Slot s : MapManager.getMap().getAllSlots())
-			{
-				Monster monster = s.getMonster();
-				if (monster != null)
-					if (monster.position().equals(pos))
-						return true;
-			}
+			Slot s = MapManager.getMap().get(Util.addRel(origin.getX(), origin.getY(), p.getX(), p.getY(), facingDir));
+			if (s != null && s.getMonster() != null)
+				return true;
 		}
 		if (activeAttack.getSkill().getAttacker() instanceof Monster)
-			return getPlayer().position().equals(Util.addRelPoints(origin, p, facingDir));
+			return getPlayer() != null && getPlayer().position().equals(Util.addRelPoints(origin, p, facingDir));
 		return false;
 	}
 	
 	public boolean hasStrongEntityAt(Point position)
 	{
-		Slot slot = MapManager.getMap().get(Util.addRelPoints(origin, position, facingDir));
-		return slot == null ? true : slot.getStrongEntity() != null;
+		Point target = Util.addRelPoints(origin, position, facingDir);
+		return !MapManager.getMap().isWalkable(target.getX(), target.getY());
 	}
 
 	public String[] getVariables(int i)
@@ -94,6 +114,54 @@ public class SkillActionManager extends AbstractScriptManager
 		return activeAttack.getSkill().getLevel();
 	}
 
+	/**
+	 * Shoots straight forward up to <i>range</i> slots and hits the first
+	 * strong entity on the way with <i>dmg</i> times the attacker's damage if
+	 * it is a target (a monster for the player, the player for a monster).
+	 * Returns how many slots the shot flies through before being stopped, so
+	 * the script only has to animate it.
+	 */
+	public int shoot(int range, float dmg)
+	{
+		Map map = MapManager.getMap();
+
+		// keep the line inside the map so only strong entities stop it
+		int end = Util.addRel(origin.getX(), origin.getY(), 0, range, facingDir);
+		while (range > 0 && !map.isPointInMap(Util.unpackX(end), Util.unpackY(end)))
+		{
+			range--;
+			end = Util.addRel(origin.getX(), origin.getY(), 0, range, facingDir);
+		}
+
+		int cell = map.firstBlocked(origin.getX(), origin.getY(), Util.unpackX(end), Util.unpackY(end));
+		if (cell < 0) // NO_CELL, or EDGE which the range kept inside the map should not give
+			return range;
+
+		int x = cell % map.getSize().getWidth(), y = cell / map.getSize().getWidth();
+		if (activeAttack.getSkill().getAttacker() instanceof Player)
+		{
+			Monster monster = map.get(x, y).getMonster();
+			if (monster != null)
+				monster.hit((int) (getPlayer().getDamage() * dmg + .5f));
+		} else if (activeAttack.getSkill().getAttacker() instanceof Monster)
+		{
+			if (getPlayer() != null && getPlayer().getX() == x && getPlayer().getY() == y)
+				getPlayer().hit((int) (activeAttack.getSkill().getAttacker().getDamage() * dmg + .5f));
+		}
+		return Math.abs(x - origin.getX()) + Math.abs(y - origin.getY()) - 1;
+	}
+
+	/**
+	 * Returns true if nothing that blocks the sight stands between the
+	 * attacker and the given slot (relative to the attacker, as in
+	 * <tt>play</tt>).
+	 */
+	public boolean canSee(Point p)
+	{
+		Point target = Util.addRelPoints(origin, p, facingDir);
+		return MapManager.getMap().hasLineOfSight(origin.getX(), origin.getY(), target.getX(), target.getY());
+	}
+
 	public void play(Point p)
 	{
 		activeAttack.play(Util.addRelPoints(origin, p, facingDir));
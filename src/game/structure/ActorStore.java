@@ -0,0 +1,304 @@
+package game.structure;
+
+import game.entities.superentities.SuperEntity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state read every tick by the superentities of a map (HP, facing,
+ * timers, flags), stored column by column in primitive arrays instead of in
+ * each object. A superentity only keeps a handle to its row, so the systems
+ * going over every actor of the map (choosing which ones plan, calming them
+ * down) walk packed arrays.
+ * <p>
+ * A handle holds the row and a generation that changes every time the row is
+ * freed, so a handle kept after its actor left the store is detected as stale
+ * instead of reading another actor's row. Only used by the thread updating
+ * the map.
+ */
+public class ActorStore
+{
+
+	public static final int ANGRY = 1, DEAD = 2, RETURNING = 4, INVINCIBLE = 8; // flags
+	public static final int NONE = -1; // not a handle
+
+	private static final int INDEX_BITS = 20, INDEX_MASK = (1 << INDEX_BITS) - 1, GENERATION_MASK = 0x7FF;
+
+	private SuperEntity owners[];
+	private int generations[], hp[], maxHP[], mp[], facing[], flags[];
+	private long nextMove[], nextAtk[], timer[];
+	private int free[]; // stack of freed rows
+	private int freeCount = 0, size = 0; // rows in use or freed, rows to go over
+
+	public ActorStore()
+	{
+		this(64);
+	}
+
+	public ActorStore(int capacity)
+	{
+		owners = new SuperEntity[capacity];
+		generations = new int[capacity];
+		hp = new int[capacity];
+		maxHP = new int[capacity];
+		mp = new int[capacity];
+		facing = new int[capacity];
+		flags = new int[capacity];
+		nextMove = new long[capacity];
+		nextAtk = new long[capacity];
+		timer = new long[capacity];
+		free = new int[capacity];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>create</b> <br>
+	 * <p>
+	 * <tt>public int create(SuperEntity owner)</tt>
+	 * </p>
+	 * Gives a cleared row to <i>owner</i> and returns its handle. <br>
+	 * <br>
+	 */
+	public int create(SuperEntity owner)
+	{
+		int row;
+		if (freeCount > 0)
+			row = free[--freeCount];
+		else
+		{
+			if (size == owners.length)
+				grow();
+			row = size++;
+		}
+
+		owners[row] = owner;
+		hp[row] = maxHP[row] = mp[row] = facing[row] = flags[row] = 0;
+		nextMove[row] = nextAtk[row] = timer[row] = 0L;
+		return generations[row] << INDEX_BITS | row;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>destroy</b> <br>
+	 * <p>
+	 * <tt>public void destroy(int handle)</tt>
+	 * </p>
+	 * Frees the row of the handle. The handle becomes stale. <br>
+	 * <br>
+	 */
+	public void destroy(int handle)
+	{
+		if (!isValid(handle))
+			return;
+
+		int row = index(handle);
+		owners[row] = null;
+		generations[row] = (generations[row] + 1) & GENERATION_MASK;
+		free[freeCount++] = row;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>moveTo</b> <br>
+	 * <p>
+	 * <tt>public int moveTo(int handle, ActorStore target)</tt>
+	 * </p>
+	 * Copies the row of the handle to a new row of <i>target</i>, frees it
+	 * here and returns the new handle (an actor changing map). <br>
+	 * <br>
+	 */
+	public int moveTo(int handle, ActorStore target)
+	{
+		int row = index(handle);
+		int moved = target.create(owners[row]);
+		int to = index(moved);
+
+		target.hp[to] = hp[row];
+		target.maxHP[to] = maxHP[row];
+		target.mp[to] = mp[row];
+		target.facing[to] = facing[row];
+		target.flags[to] = flags[row] & ~(ANGRY | RETURNING); // nothing to chase in the new map
+		target.nextMove[to] = nextMove[row];
+		target.nextAtk[to] = nextAtk[row];
+		target.timer[to] = timer[row];
+
+		destroy(handle);
+		return moved;
+	}
+
+	public boolean isValid(int handle)
+	{
+		int row = index(handle);
+		return handle != NONE && row < size && owners[row] != null
+				&& generations[row] == ((handle >>> INDEX_BITS) & GENERATION_MASK);
+	}
+
+	/**
+	 * Returns the row of a handle, to read the columns.
+	 */
+	public static int index(int handle)
+	{
+		return handle & INDEX_MASK;
+	}
+
+	/**
+	 * Returns the superentity of the handle, or null if the handle is stale.
+	 */
+	public SuperEntity get(int handle)
+	{
+		return isValid(handle) ? owners[index(handle)] : null;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>collectDue</b> <br>
+	 * <p>
+	 * <tt>public void collectDue(long tick, List&lt;SuperEntity&gt; actors)</tt>
+	 * </p>
+	 * Adds to <i>actors</i>, in row order, the living superentities that have
+	 * something to plan this tick: their next move is due or they are angry
+	 * (they may attack). The others are not even touched. <br>
+	 * <br>
+	 */
+	public void collectDue(long tick, List<SuperEntity> actors)
+	{
+		for (int row = 0; row < size; row++)
+		{
+			if (owners[row] != null && (flags[row] & DEAD) == 0 && (nextMove[row] <= tick || (flags[row] & ANGRY) != 0))
+				actors.add(owners[row]);
+		}
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>calmAll</b> <br>
+	 * <p>
+	 * <tt>public void calmAll()</tt>
+	 * </p>
+	 * Clears the anger of every actor, e.g. when the player leaves the map.
+	 * <br>
+	 * <br>
+	 */
+	public void calmAll()
+	{
+		for (int row = 0; row < size; row++)
+			flags[row] &= ~ANGRY;
+	}
+
+	/**
+	 * Returns the amount of actors in the store.
+	 */
+	public int count()
+	{
+		return size - freeCount;
+	}
+
+	private void grow()
+	{
+		int capacity = owners.length * 2;
+		owners = Arrays.copyOf(owners, capacity);
+		generations = Arrays.copyOf(generations, capacity);
+		hp = Arrays.copyOf(hp, capacity);
+		maxHP = Arrays.copyOf(maxHP, capacity);
+		mp = Arrays.copyOf(mp, capacity);
+		facing = Arrays.copyOf(facing, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		nextMove = Arrays.copyOf(nextMove, capacity);
+		nextAtk = Arrays.copyOf(nextAtk, capacity);
+		timer = Arrays.copyOf(timer, capacity);
+		free = Arrays.copyOf(free, capacity);
+	}
+
+	public int getHP(int row)
+	{
+		return hp[row];
+	}
+
+	public void setHP(int row, int value)
+	{
+		hp[row] = value;
+	}
+
+	public int getMaxHP(int row)
+	{
+		return maxHP[row];
+	}
+
+	public void setMaxHP(int row, int value)
+	{
+		maxHP[row] = value;
+	}
+
+	public int getMP(int row)
+	{
+		return mp[row];
+	}
+
+	public void setMP(int row, int value)
+	{
+		mp[row] = value;
+	}
+
+	public int getFacing(int row)
+	{
+		return facing[row];
+	}
+
+	public void setFacing(int row, int value)
+	{
+		facing[row] = value;
+	}
+
+	public boolean hasFlag(int row, int flag)
+	{
+		return (flags[row] & flag) != 0;
+	}
+
+	public void setFlag(int row, int flag, boolean value)
+	{
+		if (value)
+			flags[row] |= flag;
+		else
+			flags[row] &= ~flag;
+	}
+
+	public long getNextMove(int row)
+	{
+		return nextMove[row];
+	}
+
+	public void setNextMove(int row, long tick)
+	{
+		nextMove[row] = tick;
+	}
+
+	public long getNextAtk(int row)
+	{
+		return nextAtk[row];
+	}
+
+	public void setNextAtk(int row, long tick)
+	{
+		nextAtk[row] = tick;
+	}
+
+	/**
+	 * A general purpose tick deadline (the invincibility of the player).
+	 */
+	public long getTimer(int row)
+	{
+		return timer[row];
+	}
+
+	public void setTimer(int row, long tick)
+	{
+		timer[row] = tick;
+	}
+
+}
@@ -0,0 +1,20 @@
+package game.structure;
+
+import game.entities.Entity;
+
+/**
+ * Visits the entities of a slot or a map one by one, without building a list
+ * of them.
+ *
+ * @see Slot#forEachEntity(EntityVisitor)
+ * @see Map#forEachEntity(EntityVisitor)
+ */
+public interface EntityVisitor<T extends Entity>
+{
+
+	/**
+	 * Called with each entity visited. Returns false to stop visiting.
+	 */
+	public boolean visit(T entity);
+
+}
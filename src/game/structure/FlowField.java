@@ -0,0 +1,169 @@
+package game.structure;
+
+import game.entities.superentities.SuperEntity;
+
+/**
+ * The distance, in steps, from every slot of a map to the player, computed
+ * with a breadth first search over the walkable slots. Monsters chasing the
+ * player step to a neighbour closer to it, so they walk around obstacles and
+ * none of them searches on its own.
+ * <p>
+ * Only the slots blocked by something standing still (see
+ * <tt>Map.isObstacle</tt>) are avoided. Monsters are walkable for the search,
+ * a monster blocked by another one tries its next best step when the move is
+ * applied.
+ */
+public class FlowField
+{
+
+	public static final int UNREACHABLE = -1;
+
+	private final int width, height;
+	private final int distances[];
+	private final int queue[];
+	private int targetX = -1, targetY = -1, obstacleVersion = -1; // of the last computation
+
+	public FlowField(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		distances = new int[width * height];
+		queue = new int[width * height];
+		java.util.Arrays.fill(distances, UNREACHABLE);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>update</b> <br>
+	 * <p>
+	 * <tt>public void update(Map map)</tt>
+	 * </p>
+	 * Computes the distances again if the player changed slot or the
+	 * obstacles changed since the last call. Clears them if the player is not
+	 * in the map. <br>
+	 * <br>
+	 */
+	public void update(Map map)
+	{
+		if (!map.hasPlayer())
+		{
+			if (targetX != -1)
+			{
+				java.util.Arrays.fill(distances, UNREACHABLE);
+				targetX = targetY = -1;
+			}
+			return;
+		}
+
+		int x = map.getPlayer().getX(), y = map.getPlayer().getY();
+		if (x != targetX || y != targetY || map.getObstacleVersion() != obstacleVersion)
+			compute(map, x, y);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>compute</b> <br>
+	 * <p>
+	 * <tt>public void compute(Map map, int x, int y)</tt>
+	 * </p>
+	 * Computes the distance from every slot of the map to (<i>x</i>,
+	 * <i>y</i>). <br>
+	 * <br>
+	 */
+	public void compute(Map map, int x, int y)
+	{
+		java.util.Arrays.fill(distances, UNREACHABLE);
+		targetX = x;
+		targetY = y;
+		obstacleVersion = map.getObstacleVersion();
+
+		int head = 0, tail = 0;
+		distances[y * width + x] = 0;
+		queue[tail++] = y * width + x;
+
+		while (head < tail)
+		{
+			int cell = queue[head++];
+			int cx = cell % width, cy = cell / width;
+			int distance = distances[cell] + 1;
+
+			if (cy > 0)
+				tail = visit(map, cx, cy - 1, distance, tail);
+			if (cx < width - 1)
+				tail = visit(map, cx + 1, cy, distance, tail);
+			if (cy < height - 1)
+				tail = visit(map, cx, cy + 1, distance, tail);
+			if (cx > 0)
+				tail = visit(map, cx - 1, cy, distance, tail);
+		}
+	}
+
+	private int visit(Map map, int x, int y, int distance, int tail)
+	{
+		int cell = y * width + x;
+		if (distances[cell] != UNREACHABLE || map.isObstacle(x, y))
+			return tail;
+
+		distances[cell] = distance;
+		queue[tail] = cell;
+		return tail + 1;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getDistance</b> <br>
+	 * <p>
+	 * <tt>public int getDistance(int x, int y)</tt>
+	 * </p>
+	 * Returns the steps from (<i>x</i>, <i>y</i>) to the player, or
+	 * <tt>UNREACHABLE</tt>. <br>
+	 * <br>
+	 */
+	public int getDistance(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return UNREACHABLE;
+		return distances[y * width + x];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getSteps</b> <br>
+	 * <p>
+	 * <tt>public int getSteps(int x, int y, int dirs[])</tt>
+	 * </p>
+	 * Fills <i>dirs</i> with the directions (<tt>SuperEntity.UP</tt>,
+	 * <tt>RIGHT</tt>, <tt>DOWN</tt>, <tt>LEFT</tt>) that get closer to the
+	 * player from (<i>x</i>, <i>y</i>) and returns how many there are, 0 if
+	 * the player cannot be reached. <br>
+	 * <br>
+	 */
+	public int getSteps(int x, int y, int dirs[])
+	{
+		int distance = getDistance(x, y);
+		if (distance == UNREACHABLE)
+			return 0;
+
+		int count = 0;
+		if (isStep(x, y - 1, distance))
+			dirs[count++] = SuperEntity.UP;
+		if (isStep(x + 1, y, distance))
+			dirs[count++] = SuperEntity.RIGHT;
+		if (isStep(x, y + 1, distance))
+			dirs[count++] = SuperEntity.DOWN;
+		if (isStep(x - 1, y, distance))
+			dirs[count++] = SuperEntity.LEFT;
+		return count;
+	}
+
+	private boolean isStep(int x, int y, int distance)
+	{
+		int next = getDistance(x, y);
+		return next != UNREACHABLE && next < distance;
+	}
+
+}
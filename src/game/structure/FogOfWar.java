@@ -0,0 +1,181 @@
+package game.structure;
+
+import static org.lwjgl.opengl.GL11.GL_QUADS;
+import static org.lwjgl.opengl.GL11.glBegin;
+import static org.lwjgl.opengl.GL11.glColor4f;
+import static org.lwjgl.opengl.GL11.glEnd;
+import static org.lwjgl.opengl.GL11.glLoadIdentity;
+import static org.lwjgl.opengl.GL11.glVertex2f;
+import game.Main;
+
+/**
+ * The slots of a map the player sees and has seen. Visibility is computed
+ * with recursive shadowcasting from the player up to a radius, blocked by the
+ * obstacles of the map, and only again when the player moves or an obstacle
+ * is placed or removed. Both sets are bitsets with a bit per slot.
+ * <p>
+ * Unexplored slots are rendered black and explored slots out of sight are
+ * darkened, in a single pass over the slots in view.
+ */
+public class FogOfWar
+{
+
+	// octant transformations for the shadowcasting
+	private static final int XX[] = { 1, 0, 0, -1, -1, 0, 0, 1 }, XY[] = { 0, 1, -1, 0, 0, -1, 1, 0 },
+			YX[] = { 0, 1, 1, 0, 0, -1, -1, 0 }, YY[] = { 1, 0, 0, 1, -1, 0, 0, -1 };
+
+	private final int width, height, radius;
+	private final long visible[], explored[];
+	private int lastX = -1, lastY = -1, lastObstacleVersion = -1;
+
+	/**
+	 * @param radius
+	 *            - How far the player sees, in slots.
+	 */
+	public FogOfWar(int width, int height, int radius)
+	{
+		this.width = width;
+		this.height = height;
+		this.radius = radius;
+		visible = new long[(width * height + 63) / 64];
+		explored = new long[visible.length];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>update</b> <br>
+	 * <p>
+	 * <tt>public void update(Map map)</tt>
+	 * </p>
+	 * Computes the visible slots again if the player moved or the obstacles
+	 * changed since the last call. <br>
+	 * <br>
+	 */
+	public void update(Map map)
+	{
+		if (!map.hasPlayer())
+			return;
+
+		int x = map.getPlayer().getX(), y = map.getPlayer().getY();
+		if (x == lastX && y == lastY && map.getObstacleVersion() == lastObstacleVersion)
+			return;
+
+		lastX = x;
+		lastY = y;
+		lastObstacleVersion = map.getObstacleVersion();
+
+		java.util.Arrays.fill(visible, 0L);
+		see(x, y);
+		for (int octant = 0; octant < 8; octant++)
+			castLight(map, x, y, 1, 1.0, 0.0, XX[octant], XY[octant], YX[octant], YY[octant]);
+	}
+
+	/**
+	 * Scans the rows of an octant from <i>row</i> on between the slopes
+	 * <i>start</i> and <i>end</i>, recursing on the light left past each
+	 * obstacle.
+	 */
+	private void castLight(Map map, int cx, int cy, int row, double start, double end, int xx, int xy, int yx, int yy)
+	{
+		if (start < end)
+			return;
+
+		double newStart = 0;
+		for (int distance = row; distance <= radius; distance++)
+		{
+			boolean blocked = false;
+			int dy = -distance;
+			for (int dx = -distance; dx <= 0; dx++)
+			{
+				double leftSlope = (dx - .5) / (dy + .5), rightSlope = (dx + .5) / (dy - .5);
+				if (start < rightSlope)
+					continue;
+				if (end > leftSlope)
+					break;
+
+				int x = cx + dx * xx + dy * xy, y = cy + dx * yx + dy * yy;
+				boolean inside = x >= 0 && y >= 0 && x < width && y < height;
+				if (inside && dx * dx + dy * dy <= radius * radius)
+					see(x, y);
+
+				boolean opaque = !inside || map.isObstacle(x, y);
+				if (blocked)
+				{
+					if (opaque)
+					{
+						newStart = rightSlope;
+					} else
+					{
+						blocked = false;
+						start = newStart;
+					}
+				} else if (opaque && distance < radius)
+				{
+					blocked = true;
+					castLight(map, cx, cy, distance + 1, start, leftSlope, xx, xy, yx, yy);
+					newStart = rightSlope;
+				}
+			}
+			if (blocked)
+				break;
+		}
+	}
+
+	private void see(int x, int y)
+	{
+		int bit = y * width + x;
+		visible[bit >> 6] |= 1L << (bit & 63);
+		explored[bit >> 6] |= 1L << (bit & 63);
+	}
+
+	public boolean isVisible(int x, int y)
+	{
+		int bit = y * width + x;
+		return (visible[bit >> 6] & (1L << (bit & 63))) != 0;
+	}
+
+	public boolean isExplored(int x, int y)
+	{
+		int bit = y * width + x;
+		return (explored[bit >> 6] & (1L << (bit & 63))) != 0;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>render</b> <br>
+	 * <p>
+	 * <tt>public void render(Map map)</tt>
+	 * </p>
+	 * Covers the slots in view that are not visible: black if they were never
+	 * seen, darkened otherwise. All of them are drawn in one batch. <br>
+	 * <br>
+	 */
+	public void render(Map map)
+	{
+		int offX = map.getOffSet().getX(), offY = map.getOffSet().getY();
+		int endX = Math.min(width, offX + Main.GRIDSIZE.getWidth()), endY = Math.min(height, offY + Main.GRIDSIZE.getHeight());
+
+		glLoadIdentity();
+		glBegin(GL_QUADS);
+		for (int y = Math.max(0, offY); y < endY; y++)
+		{
+			for (int x = Math.max(0, offX); x < endX; x++)
+			{
+				if (isVisible(x, y))
+					continue;
+
+				glColor4f(0f, 0f, 0f, isExplored(x, y) ? .5f : 1f);
+				float left = (x - offX) * Slot.SIZE, top = (y - offY) * Slot.SIZE;
+				glVertex2f(left, top);
+				glVertex2f(left + Slot.SIZE, top);
+				glVertex2f(left + Slot.SIZE, top + Slot.SIZE);
+				glVertex2f(left, top + Slot.SIZE);
+			}
+		}
+		glEnd();
+		glColor4f(1f, 1f, 1f, 1f);
+	}
+
+}
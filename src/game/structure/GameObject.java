@@ -1,5 +1,12 @@
 package game.structure;
 
+import game.Main;
+import game.util.GameClock;
+import game.util.GameRandom;
+import game.util.Scheduler;
+
+import java.util.Random;
+
 /**
  * Every game element is a game object. Each contain an id.
  */
@@ -51,6 +58,21 @@ public abstract class GameObject
 		return MapManager.getMap();
 	}
 
+	public static GameClock getClock()
+	{
+		return Main.getClock();
+	}
+
+	public static Scheduler getScheduler()
+	{
+		return Main.getScheduler();
+	}
+
+	public static Random getRandom(GameRandom.Stream stream)
+	{
+		return getMap().getRandom().get(stream);
+	}
+
 	public boolean isEntity()
 	{
 		return (id() & 0x2000) == 0x2000;
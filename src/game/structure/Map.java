@@ -2,19 +2,27 @@ package game.structure;
 
 import game.Main;
 import game.entities.Entity;
+import game.entities.NPC;
 import game.entities.Object;
 import game.entities.Object.Block;
 import game.entities.Portal;
 import game.entities.Tile;
+import game.entities.item.Item;
 import game.entities.superentities.Monster;
+import game.entities.superentities.MonsterPool;
 import game.entities.superentities.Player;
 import game.entities.superentities.Spawner;
+import game.entities.superentities.SuperEntity;
+import game.util.GameRandom;
 import game.util.TextureManager;
+import game.util.Util;
 import game.util.XMLParser;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
 
 import org.lwjgl.util.Dimension;
@@ -35,7 +43,33 @@ public class Map extends GameObject
 	private Player player;
 	private Slot[][] matrix;
 	private TextureManager textureManager = new TextureManager(); // holds all textures used by the map
-	private List<Spawner> spawners = new ArrayList<Spawner>();
+	private PriorityQueue<Spawner> respawns = new PriorityQueue<Spawner>(16, new Comparator<Spawner>()
+	{
+		public int compare(Spawner a, Spawner b)
+		{
+			return a.getDueTick() < b.getDueTick() ? -1 : a.getDueTick() > b.getDueTick() ? 1 : 0;
+		}
+	}); // spawners of the dead monsters, by respawn tick
+	private MonsterPool monsterPool = new MonsterPool(); // dead monsters reused by the spawners
+	private ActorStore actors = new ActorStore(); // hot state of the superentities of the map
+	private FlowField flowField; // distances to the player, followed by the angry monsters
+	private PathFinder pathFinder;
+	private FogOfWar fog; // null if the whole map is always visible
+	private int obstacleVersion = 0; // changes every time an obstacle is placed or removed, or starts or stops moving
+	private long occupied[], obstacles[]; // bit y * width + x set if the slot holds a strong entity, one standing still
+	private final List<Entity> updating = new ArrayList<Entity>(); // entities to update this tick, reused
+	private final List<SuperEntity> planning = new ArrayList<SuperEntity>(); // actors to plan this tick, reused
+	private final EntityVisitor<Entity> collect = new EntityVisitor<Entity>()
+	{
+		public boolean visit(Entity entity)
+		{
+			return updating.add(entity);
+		}
+	};
+
+	public final static int NO_CELL = -1, EDGE = -2; // returned by the line queries when nothing stops the line, when it leaves the map
+	private final static int STOP_NEVER = 0, STOP_AT_OBSTACLE = 1, STOP_AT_STRONG = 2;
+	private GameRandom random; // own random source so the maps can be updated concurrently and still reproducibly
 
 	public final static int VIEW_LIMIT = 4; // Tiles away from the side to move the camera
 
@@ -47,60 +81,53 @@ public class Map extends GameObject
 	public Map(int id, TextureManager texManager)
 	{
 		super(id);
-		parseMap();
+		random = Main.getRandom().split(id);
+
+		// the entities created while parsing belong to this map
+		Map previous = MapManager.enter(this);
+		try
+		{
+			parseMap();
+		} finally
+		{
+			MapManager.exit(previous);
+		}
+		flowField = new FlowField(size.getWidth(), size.getHeight());
+		pathFinder = new PathFinder(this, size.getWidth(), size.getHeight());
 		loadTextures(texManager);
 	}
 
-	private void loadTextures(TextureManager prevTexManager)
+	private void loadTextures(final TextureManager prevTexManager)
 	{
-		// loads all texture of the map, recycle some from the previous map
+		// textures are loaded lazily when the entities are first rendered, only
+		// recycle the ones the previous map already loaded
 		// TODO recycle equipped items, and inventory items
 
-		List<Slot> slots = getAllSlots();
+		if (prevTexManager == null)
+			return;
 
-		for (Slot slot : slots)
+		forEachEntity(new EntityVisitor<Entity>()
 		{
-			for (Entity entity : slot.getAll())
+			public boolean visit(Entity entity)
 			{
-				if (prevTexManager != null)
-				{
-					Texture tex = prevTexManager.get(entity.id());
-					if (tex != null)
-					{
-						textureManager.recycle(entity.id(), tex);
-					}
-				} else
+				recycle(prevTexManager, entity.id());
+				if (entity instanceof Monster)
 				{
-					if (!entity.isInvisible())
-					{
-						textureManager.add(entity.id());
-					}
+					for (Integer id : ((Monster) entity).getDropsID())
+						recycle(prevTexManager, id);
 				}
-				entity.setTexture(textureManager.get(entity.id()));
+				return true;
 			}
+		});
 
-			Monster monster = slot.getMonster();
-			List<Integer> monsterDrops = new ArrayList<Integer>();
-			if (monster != null)
-			{
-				monsterDrops.addAll(monster.getDropsID());
-			}
-
-			for (Integer id : monsterDrops)
-			{
-				if (prevTexManager != null)
-				{
-					Texture tex = prevTexManager.get(id);
-					if (tex != null)
-					{
-						textureManager.recycle(id, tex);
-					}
-				} else
-				{
-					textureManager.add(id);
-				}
-			}
+	}
 
+	private void recycle(TextureManager previous, int id)
+	{
+		Texture tex = previous.peek(id);
+		if (tex != null)
+		{
+			textureManager.recycle(id, tex);
 		}
 
 	}
@@ -114,13 +141,19 @@ public class Map extends GameObject
 		size.setWidth(Integer.parseInt(parser.getAttribute("Map", "width")));
 		size.setHeight(Integer.parseInt(parser.getAttribute("Map", "height")));
 
+		// optional, maps with a fog radius are only seen around the player
+		if (!parser.getAttribute("Map", "fog_radius").equals(""))
+			fog = new FogOfWar(size.getWidth(), size.getHeight(), Integer.parseInt(parser.getAttribute("Map", "fog_radius")));
+
 		// initialize matrix
+		occupied = new long[(size.getWidth() * size.getHeight() + 63) / 64];
+		obstacles = new long[occupied.length];
 		matrix = new Slot[size.getWidth()][size.getHeight()];
 		for (int i = 0; i < matrix.length; i++)
 		{
 			for (int j = 0; j < matrix[0].length; j++)
 			{
-				matrix[i][j] = new Slot();
+				matrix[i][j] = new Slot(this, i, j);
 			}
 		}
 
@@ -159,7 +192,7 @@ public class Map extends GameObject
 				add(Entity.createEntity(Integer.parseInt(data.get("id"), 16)), position);
 				if (xmlElement.equals("Monsters"))
 				{
-					spawners.add(new Spawner(get(position).getMonster(), 2000));
+					new Spawner(get(position).getMonster(), 2000);
 				}
 			}
 		}
@@ -170,30 +203,90 @@ public class Map extends GameObject
 		getPlayer().input();
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>update</b> <br>
+	 * <p>
+	 * <tt>public void update()</tt>
+	 * </p>
+	 * Updates the map in two phases. First the flow field to the player is
+	 * brought up to date, the requested paths are found and every actor with
+	 * something to do (picked from the actor store) plans it against the map
+	 * as it was at the start of the tick, possibly concurrently. Then the
+	 * entities are updated one by one in slot order, applying the plans, so
+	 * when two monsters want the same slot the first one gets it and the other
+	 * falls back to its next choice. Every entity is updated once even if it
+	 * moves to a slot not yet visited. Finally the fog of war follows the
+	 * player and the monsters due to respawn are spawned. <br>
+	 * <br>
+	 */
 	public void update()
 	{
-		for (Slot s : getAllSlots())
+		long tick = getClock().getTick();
+		updating.clear();
+		forEachEntity(collect);
+
+		planning.clear();
+		actors.collectDue(tick, planning);
+
+		flowField.update(this);
+		pathFinder.update();
+		MapManager.plan(this, planning);
+
+		for (int i = 0; i < updating.size(); i++)
 		{
-			s.update();
+			updating.get(i).update();
 		}
 
-		for (Spawner spawner : spawners)
+		if (fog != null)
+			fog.update(this);
+
+		while (!respawns.isEmpty() && respawns.peek().getDueTick() <= tick)
 		{
-			spawner.update();
+			Spawner spawner = respawns.poll();
+			if (!spawner.spawn())
+				respawns.add(spawner); // position taken, spawn() moved the respawn later
 		}
 
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>queueRespawn</b> <br>
+	 * <p>
+	 * <tt>public void queueRespawn(Spawner spawner)</tt>
+	 * </p>
+	 * Queues the spawner of a dead monster. The map spawns the monster when
+	 * the spawner is due, so only the respawns due in a tick cost anything. <br>
+	 * <br>
+	 */
+	public void queueRespawn(Spawner spawner)
+	{
+		respawns.add(spawner);
+	}
+
 	public void render()
 	{
 		// Do not render slot by slot, but by entity type (i.e. first all tiles,
 		// then all items, etc)
 		for (int j = 0; j < 3; j++)
 		{
+			if (j == 2 && fog != null)
+				fog.render(this); // over the entities, under the names and bars of the visible ones
+
 			for (int i = 0; i < 5; i++)
 			{
-				for (Slot s : getAllSlots())
-					s.render(i, j);
+				for (int x = 0; x < size.getWidth(); x++)
+				{
+					for (int y = 0; y < size.getHeight(); y++)
+					{
+						if (j == 2 && fog != null && !fog.isVisible(x, y))
+							continue;
+						matrix[x][y].render(i, j);
+					}
+				}
 			}
 		}
 	}
@@ -216,15 +309,29 @@ public class Map extends GameObject
 	 */
 	public void add(Entity entity, Point pos)
 	{
+		add(entity, pos.getX(), pos.getY());
+	}
+
+	public void add(Entity entity, int x, int y)
+	{
+		if (entity instanceof Item)
+		{ // an item joining a stack on the slot is not kept, so it is not placed
+			if (get(x, y).addItem((Item) entity))
+				entity.modifyPos(x, y);
+			return;
+		}
 
-		entity.modifyPos(new Point(pos));
-		get(pos).add(entity);
+		entity.modifyPos(x, y);
+		get(x, y).add(entity);
+
+		if (entity instanceof SuperEntity)
+			((SuperEntity) entity).moveTo(actors); // from the store of the map it was created in
 
 		if (entity instanceof Object && !entity.isStrong())
 		{
 			for (Block block : ((Object) entity).getBlocks())
 			{
-				add(block, block.position());
+				add(block, block.getX(), block.getY());
 			}
 		}
 
@@ -232,6 +339,8 @@ public class Map extends GameObject
 		{
 			player = (Player) entity; // save a reference to the player
 			centerView(); // center the view to the player
+			if (fog != null)
+				fog.update(this);
 		}
 
 	}
@@ -263,15 +372,16 @@ public class Map extends GameObject
 
 	public boolean isPlayerAt(Point pos)
 	{
-		return player.position().equals(pos);
+		return player.getX() == pos.getX() && player.getY() == pos.getY();
 	}
 
 	public void removePlayer()
 	{
 		if (hasPlayer())
 		{
-			get(getPlayer().position()).remove(getPlayer());
+			get(getPlayer().getX(), getPlayer().getY()).remove(getPlayer());
 			player = null;
+			actors.calmAll(); // nobody left to chase
 		}
 	}
 
@@ -286,7 +396,12 @@ public class Map extends GameObject
 	 */
 	public boolean isPointInMap(Point pos)
 	{
-		return pos.getX() < size.getWidth() && pos.getY() < size.getHeight() && pos.getX() >= 0 && pos.getY() >= 0;
+		return isPointInMap(pos.getX(), pos.getY());
+	}
+
+	public boolean isPointInMap(int x, int y)
+	{
+		return x < size.getWidth() && y < size.getHeight() && x >= 0 && y >= 0;
 	}
 
 	/**
@@ -301,8 +416,12 @@ public class Map extends GameObject
 	 */
 	public static boolean isPointInGrid(Point p)
 	{
-		return p.getX() >= 0 && p.getY() >= 0 && p.getX() < Main.GRIDSIZE.getWidth()
-				&& p.getY() < Main.GRIDSIZE.getHeight();
+		return isPointInGrid(p.getX(), p.getY());
+	}
+
+	public static boolean isPointInGrid(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < Main.GRIDSIZE.getWidth() && y < Main.GRIDSIZE.getHeight();
 	}
 
 	/**
@@ -333,13 +452,13 @@ public class Map extends GameObject
 	public void centerView()
 	{
 		while (getPlayer().getX() >= Main.GRIDSIZE.getWidth() - Map.VIEW_LIMIT + offset.getX()
-				&& get(new Point(Main.GRIDSIZE.getWidth() + getOffSet().getX(), 0)).getTile() != null)
+				&& get(Main.GRIDSIZE.getWidth() + getOffSet().getX(), 0).getTile() != null)
 		{
 			offset.setX(offset.getX() + 1);
 		}
 
 		while (getPlayer().getY() >= Main.GRIDSIZE.getHeight() - Map.VIEW_LIMIT + offset.getY()
-				&& get(new Point(0, Main.GRIDSIZE.getHeight() + getOffSet().getY())).getTile() != null)
+				&& get(0, Main.GRIDSIZE.getHeight() + getOffSet().getY()).getTile() != null)
 		{
 			offset.setY(offset.getY() + 1);
 		}
@@ -363,18 +482,62 @@ public class Map extends GameObject
 
 		List<Entity> strongEntities = new ArrayList<Entity>();
 
-		for (Slot s : getAllSlots())
+		for (int x = 0; x < size.getWidth(); x++)
 		{
-			for (Entity e : s.getAll())
+			for (int y = 0; y < size.getHeight(); y++)
 			{
-				if (e.isStrong())
-					strongEntities.add(e);
+				if (matrix[x][y].getStrongEntity() != null)
+					strongEntities.add(matrix[x][y].getStrongEntity());
 			}
 		}
 
 		return strongEntities;
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>forEachEntity</b> <br>
+	 * <p>
+	 * <tt>public boolean forEachEntity(EntityVisitor&lt;? super Entity&gt; visitor)</tt>
+	 * </p>
+	 * Visits every entity of the map, slot by slot in the order of
+	 * <tt>getAllSlots()</tt>, without allocating. The visitor must not add or
+	 * remove entities. Returns false if the visitor stopped. <br>
+	 * <br>
+	 * 
+	 * @see Slot#forEachEntity(EntityVisitor)
+	 */
+	public boolean forEachEntity(EntityVisitor<? super Entity> visitor)
+	{
+		return forEachEntity(Entity.class, visitor);
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>forEachEntity</b> <br>
+	 * <p>
+	 * <tt>public &lt;T extends Entity&gt; boolean forEachEntity(Class&lt;T&gt; type, EntityVisitor&lt;? super T&gt; visitor)</tt>
+	 * </p>
+	 * Visits every entity of the map of the given type. <br>
+	 * <br>
+	 * 
+	 * @see #forEachEntity(EntityVisitor)
+	 */
+	public <T extends Entity> boolean forEachEntity(Class<T> type, EntityVisitor<? super T> visitor)
+	{
+		for (int x = 0; x < size.getWidth(); x++)
+		{
+			for (int y = 0; y < size.getHeight(); y++)
+			{
+				if (!matrix[x][y].forEachEntity(type, visitor))
+					return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * 
 	 * <br>
@@ -382,7 +545,9 @@ public class Map extends GameObject
 	 * <p>
 	 * <tt>public List<Slot> getAllSlots()</tt>
 	 * </p>
-	 * Returns a list of all slots in the map. <br>
+	 * Returns a list of all slots in the map. Kept for compatibility, use
+	 * <tt>forEachEntity</tt> or <tt>get(x, y)</tt> to go over the map without
+	 * allocating. <br>
 	 * <br>
 	 */
 	public List<Slot> getAllSlots()
@@ -412,8 +577,22 @@ public class Map extends GameObject
 	 */
 	public Slot get(Point pos)
 	{
-		if (isPointInMap(pos))
-			return matrix[pos.getX()][pos.getY()];
+		return get(pos.getX(), pos.getY());
+	}
+
+	/**
+	 * Returns the slot at a position packed with <tt>Util.pack</tt>, or null
+	 * if it is outside the map.
+	 */
+	public Slot get(int pos)
+	{
+		return get(Util.unpackX(pos), Util.unpackY(pos));
+	}
+
+	public Slot get(int x, int y)
+	{
+		if (x >= 0 && y >= 0 && x < size.getWidth() && y < size.getHeight())
+			return matrix[x][y];
 		return null;
 	}
 
@@ -447,6 +626,50 @@ public class Map extends GameObject
 		return textureManager;
 	}
 
+	/**
+	 * Returns the fog of war of the map, or null if the map has none.
+	 */
+	public FogOfWar getFog()
+	{
+		return fog;
+	}
+
+	public PathFinder getPathFinder()
+	{
+		return pathFinder;
+	}
+
+	public FlowField getFlowField()
+	{
+		return flowField;
+	}
+
+	public ActorStore getActors()
+	{
+		return actors;
+	}
+
+	public MonsterPool getMonsterPool()
+	{
+		return monsterPool;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>getRandom</b> <br>
+	 * <p>
+	 * <tt>public GameRandom getRandom()</tt>
+	 * </p>
+	 * Returns the random source of the map, derived from the world seed and the
+	 * map id. Everything happening in the map draws from it. <br>
+	 * <br>
+	 */
+	public GameRandom getRandom()
+	{
+		return random;
+	}
+
 	/**
 	 * 
 	 * <br>
@@ -459,7 +682,209 @@ public class Map extends GameObject
 	 */
 	public void remove(Entity entity)
 	{
-		get(entity.position()).remove(entity);
+		get(entity.getX(), entity.getY()).remove(entity);
+	}
+
+	/**
+	 * Called by the slots when their strong entity changes (null when it is
+	 * removed) to keep the occupancy bits up to date.
+	 */
+	void setOccupied(int x, int y, Entity entity)
+	{
+		int bit = y * size.getWidth() + x;
+		long mask = 1L << (bit & 63);
+
+		if (entity != null)
+			occupied[bit >> 6] |= mask;
+		else
+			occupied[bit >> 6] &= ~mask;
+
+		// only the entities standing still (blocks, NPCs not walking) change the obstacles. The superentities and
+		// walking NPCs come and go every step, forgetting the paths for each would empty the cache all the time,
+		// they are waited for or walked around by whoever follows a path instead
+		boolean obstacle = entity != null && !(entity instanceof SuperEntity)
+				&& !(entity instanceof NPC && ((NPC) entity).isWalking());
+		if (obstacle != ((obstacles[bit >> 6] & mask) != 0))
+		{
+			obstacles[bit >> 6] ^= mask;
+			obstacleVersion++;
+		}
+	}
+
+	/**
+	 * Checks again whether the strong entity of the slot is an obstacle, when
+	 * it starts or stops moving (an NPC starting or ending a walk).
+	 */
+	public void updateObstacle(int x, int y)
+	{
+		Slot slot = get(x, y);
+		if (slot != null)
+			setOccupied(x, y, slot.getStrongEntity());
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>isWalkable</b> <br>
+	 * <p>
+	 * <tt>public boolean isWalkable(int x, int y)</tt>
+	 * </p>
+	 * Returns true if the slot is inside the map and has no strong entity, so
+	 * a superentity can move to it. Only reads a bit, use it for every
+	 * movement probe. <br>
+	 * <br>
+	 */
+	public boolean isWalkable(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= size.getWidth() || y >= size.getHeight())
+			return false;
+		int bit = y * size.getWidth() + x;
+		return (occupied[bit >> 6] & (1L << (bit & 63))) == 0;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>hasLineOfSight</b> <br>
+	 * <p>
+	 * <tt>public boolean hasLineOfSight(int x0, int y0, int x1, int y1)</tt>
+	 * </p>
+	 * Returns true if no obstacle stands on the straight line between the two
+	 * slots (the slots themselves are not checked). Moving entities do not
+	 * block the sight. <br>
+	 * <br>
+	 */
+	public boolean hasLineOfSight(int x0, int y0, int x1, int y1)
+	{
+		int cell = trace(x0, y0, x1, y1, STOP_AT_OBSTACLE, null);
+		return cell == NO_CELL || cell == y1 * size.getWidth() + x1;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>firstBlocked</b> <br>
+	 * <p>
+	 * <tt>public int firstBlocked(int x0, int y0, int x1, int y1)</tt>
+	 * </p>
+	 * Walks the line from (<i>x0</i>, <i>y0</i>) (excluded) to (<i>x1</i>,
+	 * <i>y1</i>) and returns the first slot that is not walkable as
+	 * <tt>y * width + x</tt>, <tt>EDGE</tt> if the line leaves the map first
+	 * or <tt>NO_CELL</tt> if the whole line is free. <br>
+	 * <br>
+	 */
+	public int firstBlocked(int x0, int y0, int x1, int y1)
+	{
+		return trace(x0, y0, x1, y1, STOP_AT_STRONG, null);
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>firstMonster</b> <br>
+	 * <p>
+	 * <tt>public Monster firstMonster(int x0, int y0, int x1, int y1)</tt>
+	 * </p>
+	 * Returns the monster a shot from (<i>x0</i>, <i>y0</i>) to (<i>x1</i>,
+	 * <i>y1</i>) would hit: the strong entity of the first blocked slot if it
+	 * is a monster, null if the line is free or something else blocks it. <br>
+	 * <br>
+	 */
+	public Monster firstMonster(int x0, int y0, int x1, int y1)
+	{
+		int cell = firstBlocked(x0, y0, x1, y1);
+		if (cell < 0)
+			return null;
+		return get(cell % size.getWidth(), cell / size.getWidth()).getMonster();
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>cellsAlong</b> <br>
+	 * <p>
+	 * <tt>public int cellsAlong(int x0, int y0, int x1, int y1, int cells[])</tt>
+	 * </p>
+	 * Fills <i>cells</i> with the slots on the line from (<i>x0</i>,
+	 * <i>y0</i>) (excluded) to (<i>x1</i>, <i>y1</i>) as
+	 * <tt>y * width + x</tt>, in order, and returns how many were written (no
+	 * more than the length of the array). <br>
+	 * <br>
+	 */
+	public int cellsAlong(int x0, int y0, int x1, int y1, int cells[])
+	{
+		trace(x0, y0, x1, y1, STOP_NEVER, cells);
+		return Math.min(cells.length, Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0)));
+	}
+
+	/**
+	 * Walks the line between the slots with Bresenham's algorithm, writing the
+	 * slots to <i>cells</i> if it is not null, and returns the first one that
+	 * stops the walk (or <tt>NO_CELL</tt>). Slots outside the map stop any
+	 * walk except <tt>STOP_NEVER</tt>.
+	 */
+	private int trace(int x0, int y0, int x1, int y1, int stop, int cells[])
+	{
+		int width = size.getWidth();
+		int dx = Math.abs(x1 - x0), dy = -Math.abs(y1 - y0);
+		int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+		int error = dx + dy, x = x0, y = y0, count = 0;
+
+		while (x != x1 || y != y1)
+		{
+			int doubled = 2 * error;
+			if (doubled >= dy)
+			{
+				error += dy;
+				x += sx;
+			}
+			if (doubled <= dx)
+			{
+				error += dx;
+				y += sy;
+			}
+
+			if (cells != null)
+			{
+				if (count == cells.length)
+					return NO_CELL;
+				cells[count++] = y * width + x;
+			}
+
+			if ((stop == STOP_AT_OBSTACLE && isObstacle(x, y)) || (stop == STOP_AT_STRONG && !isWalkable(x, y)))
+				return get(x, y) == null ? EDGE : y * width + x;
+		}
+		return NO_CELL;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>isObstacle</b> <br>
+	 * <p>
+	 * <tt>public boolean isObstacle(int x, int y)</tt>
+	 * </p>
+	 * Returns true if the slot is outside the map or holds a strong entity
+	 * standing still: the blocks of the objects and the NPCs not walking. Paths
+	 * and flow fields go around obstacles only, the superentities and walking
+	 * NPCs move out of the way. <br>
+	 * <br>
+	 */
+	public boolean isObstacle(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= size.getWidth() || y >= size.getHeight())
+			return true;
+		int bit = y * size.getWidth() + x;
+		return (obstacles[bit >> 6] & (1L << (bit & 63))) != 0;
+	}
+
+	/**
+	 * Returns a number that changes every time an obstacle is placed or
+	 * removed, so paths found before can be discarded.
+	 */
+	public int getObstacleVersion()
+	{
+		return obstacleVersion;
 	}
 
 	/**
@@ -475,12 +900,12 @@ public class Map extends GameObject
 	 */
 	public Portal getPortalByID(int id)
 	{
-		for (Slot s : getAllSlots())
+		for (int x = 0; x < size.getWidth(); x++)
 		{
-			Portal portal = s.getPortal();
-			if (portal != null)
+			for (int y = 0; y < size.getHeight(); y++)
 			{
-				if (portal.id() == id)
+				Portal portal = matrix[x][y].getPortal();
+				if (portal != null && portal.id() == id)
 					return portal;
 			}
 		}
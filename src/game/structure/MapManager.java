@@ -1,21 +1,44 @@
 package game.structure;
 
+import game.Main;
 import game.entities.superentities.Player;
+import game.entities.superentities.SuperEntity;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.lwjgl.util.Point;
 
 /**
- * Static class used to access and set the current map. Updates, renders and
- * gives input events to the current map.
+ * Static class used to access and set the current map. Renders and gives
+ * input events to the current map. Updates the current map every tick and the
+ * other maps at a reduced rate so the world stays alive while the player is
+ * elsewhere.
+ * <p>
+ * Each map is an independent update unit: the maps due in a tick are updated
+ * concurrently on a pool of worker threads and the tick ends when all of them
+ * are done. Effects crossing from one map to another (moving the player
+ * through a portal) are requested during the tick and applied once every map
+ * has finished updating.
  */
 public class MapManager
 {
 
 	private static Set<Map> maps = new HashSet<Map>();
 	private static Map currentMap;
+	// the map being updated by each thread, entities belong to it while it updates
+	private static ThreadLocal<Map> updatingMap = new ThreadLocal<Map>();
+	private static List<Transfer> transfers = new ArrayList<Transfer>(); // player transfers requested this tick
+	private static ExecutorService workers, planners;
+	private static final int PLAN_CHUNK = 256; // actors planned per task on large maps
 
 	static {
 		// TODO read and create all maps and set current map based on the game config file
@@ -23,19 +46,32 @@ public class MapManager
 				maps.add(new Map(1));
 				setMap(0, new Point(4, 6));
 	}
-	
+
+	/**
+	 * A pending move of the player to another map, to a position or to the
+	 * portal with the given id.
+	 */
+	private static class Transfer
+	{
+		private int mapID, portalID;
+		private Point position;
+
+		private Transfer(int mapID, Point position, int portalID)
+		{
+			this.mapID = mapID;
+			this.position = position;
+			this.portalID = portalID;
+		}
+	}
 
 	public static void setMap(int id, Point playerPos)
 	{
 		// TODO each map should have a spawn point
 
-		Player player;
+		Player player = null;
 		Point spawnPoint = playerPos;
 
-		if (currentMap == null) // if this is the starting map, create player
-		{
-			player = new Player(Integer.parseInt("2600", 16), spawnPoint);
-		} else // else retrieve player from previous map
+		if (currentMap != null) // retrieve player from previous map
 		{
 			player = currentMap.getPlayer();
 			player.stopAllActions();
@@ -43,11 +79,12 @@ public class MapManager
 			currentMap.resetCamera();
 		}
 
-		for (Map map : maps)
-		{
-			if (map.id() == id)
-				currentMap = map;
-		}
+		Map map = getMapByID(id);
+		if (map != null)
+			currentMap = map;
+
+		if (player == null) // this is the starting map, create player in it
+			player = new Player(Integer.parseInt("2600", 16), spawnPoint);
 
 		currentMap.add(player, spawnPoint);
 
@@ -58,9 +95,273 @@ public class MapManager
 		currentMap.input();
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>requestMap</b> <br>
+	 * <p>
+	 * <tt>public static void requestMap(int id, Point playerPos)</tt>
+	 * </p>
+	 * Moves the player to the map with the given id once the maps of the
+	 * current tick have finished updating. Safe to call from any map being
+	 * updated. <br>
+	 * <br>
+	 */
+	public static void requestMap(int id, Point playerPos)
+	{
+		synchronized (transfers)
+		{
+			transfers.add(new Transfer(id, playerPos, -1));
+		}
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>requestMapAtPortal</b> <br>
+	 * <p>
+	 * <tt>public static void requestMapAtPortal(int id, int portalID)</tt>
+	 * </p>
+	 * Moves the player to the portal with the given id of the map with the
+	 * given id once the maps of the current tick have finished updating. <br>
+	 * <br>
+	 */
+	public static void requestMapAtPortal(int id, int portalID)
+	{
+		synchronized (transfers)
+		{
+			transfers.add(new Transfer(id, null, portalID));
+		}
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>update</b> <br>
+	 * <p>
+	 * <tt>public static void update()</tt>
+	 * </p>
+	 * Updates the current map, and every other map once every
+	 * <tt>Main.INACTIVE_TICK_INTERVAL</tt> ticks (0 freezes them). The
+	 * inactive maps are staggered by id so they do not all update in the same
+	 * tick. Gameplay timers are tick deadlines, so a map updated less often
+	 * still respawns and moves its monsters on time, just with a coarser
+	 * granularity. <br>
+	 * The maps due are updated concurrently (see <tt>Main.UPDATE_THREADS</tt>)
+	 * and the requested player transfers are applied afterwards. <br>
+	 * <br>
+	 */
 	public static void update()
 	{
-		currentMap.update();
+		long tick = Main.getClock().getTick();
+		List<Map> due = new ArrayList<Map>();
+
+		for (Map map : maps)
+		{
+			if (map == currentMap
+					|| (Main.INACTIVE_TICK_INTERVAL > 0 && (tick + map.id()) % Main.INACTIVE_TICK_INTERVAL == 0))
+			{
+				due.add(map);
+			}
+		}
+
+		if (due.size() == 1 || getWorkers() == null)
+		{
+			for (Map map : due)
+				update(map);
+		} else
+		{
+			updateConcurrently(due);
+		}
+
+		applyTransfers();
+	}
+
+	private static void updateConcurrently(List<Map> due)
+	{
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(due.size());
+		for (final Map map : due)
+		{
+			tasks.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					update(map);
+					return null;
+				}
+			});
+		}
+
+		// invokeAll returns when every map is done, the barrier of the tick
+		invokeAll(workers, tasks);
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>plan</b> <br>
+	 * <p>
+	 * <tt>static void plan(Map map, List&lt;SuperEntity&gt; actors)</tt>
+	 * </p>
+	 * Runs the planning phase of the actors of <i>map</i>. Large maps split
+	 * their actors in chunks planned concurrently on a second pool (a map
+	 * being updated on the map pool cannot wait on that same pool). Planning
+	 * only reads the map, so the chunks need no ordering between them. <br>
+	 * <br>
+	 */
+	static void plan(final Map map, List<SuperEntity> actors)
+	{
+		ExecutorService pool = actors.size() < PLAN_CHUNK * 2 ? null : getPlanners();
+
+		if (pool == null)
+		{
+			for (SuperEntity actor : actors)
+				actor.plan();
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < actors.size(); i += PLAN_CHUNK)
+		{
+			final List<SuperEntity> chunk = actors.subList(i, Math.min(i + PLAN_CHUNK, actors.size()));
+			tasks.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					Map previous = enter(map);
+					try
+					{
+						for (SuperEntity actor : chunk)
+							actor.plan();
+					} finally
+					{
+						exit(previous);
+					}
+					return null;
+				}
+			});
+		}
+
+		invokeAll(pool, tasks);
+	}
+
+	private static void invokeAll(ExecutorService pool, List<Callable<Void>> tasks)
+	{
+		try
+		{
+			for (Future<Void> result : pool.invokeAll(tasks))
+				result.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static void update(Map map)
+	{
+		Map previous = enter(map);
+		try
+		{
+			map.update();
+		} finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Makes <i>map</i> the map of the entities of this thread until
+	 * <tt>exit</tt> is called. Returns the previous one.
+	 */
+	static Map enter(Map map)
+	{
+		Map previous = updatingMap.get();
+		updatingMap.set(map);
+		return previous;
+	}
+
+	static void exit(Map previous)
+	{
+		updatingMap.set(previous);
+	}
+
+	private static void applyTransfers()
+	{
+		List<Transfer> pending;
+		synchronized (transfers)
+		{
+			if (transfers.isEmpty())
+				return;
+			pending = new ArrayList<Transfer>(transfers);
+			transfers.clear();
+		}
+
+		for (Transfer transfer : pending)
+		{
+			Point position = transfer.position;
+			if (position == null)
+				position = new Point(getMapByID(transfer.mapID).getPortalByID(transfer.portalID).position());
+			setMap(transfer.mapID, position);
+			currentMap.centerView();
+		}
+	}
+
+	private static ExecutorService getWorkers()
+	{
+		if (workers == null && maps.size() > 1)
+			workers = createPool(Math.min(getThreads(), maps.size()), "map-updater-");
+		return workers;
+	}
+
+	private static synchronized ExecutorService getPlanners()
+	{
+		if (planners == null)
+			planners = createPool(getThreads(), "actor-planner-");
+		return planners;
+	}
+
+	private static int getThreads()
+	{
+		return Main.UPDATE_THREADS > 0 ? Main.UPDATE_THREADS : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns a fixed pool of daemon threads, or null if there would be only
+	 * one thread (the caller then runs the work itself).
+	 */
+	private static ExecutorService createPool(int threads, final String name)
+	{
+		if (threads <= 1)
+			return null;
+
+		return Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private int count = 0;
+
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, name + count++);
+				thread.setDaemon(true); // do not keep the game running on exit
+				return thread;
+			}
+		});
+	}
+
+	private static Map getMapByID(int id)
+	{
+		for (Map map : maps)
+		{
+			if (map.id() == id)
+				return map;
+		}
+		return null;
 	}
 
 	public static void render()
@@ -68,7 +369,38 @@ public class MapManager
 		currentMap.render();
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>getMap</b> <br>
+	 * <p>
+	 * <tt>public static Map getMap()</tt>
+	 * </p>
+	 * Returns the map being updated, or the current map (the one with the
+	 * player) outside of an update. Entities use it to reach the map they are
+	 * in. <br>
+	 * <br>
+	 * 
+	 * @see #getCurrentMap()
+	 */
 	public static Map getMap()
+	{
+		Map map = updatingMap.get();
+		return map != null ? map : currentMap;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>getCurrentMap</b> <br>
+	 * <p>
+	 * <tt>public static Map getCurrentMap()</tt>
+	 * </p>
+	 * Returns the map where the player is, the one rendered and receiving the
+	 * input. <br>
+	 * <br>
+	 */
+	public static Map getCurrentMap()
 	{
 		return currentMap;
 	}
@@ -0,0 +1,79 @@
+package game.structure;
+
+import game.entities.superentities.SuperEntity;
+
+/**
+ * A path between two slots of a map found by the <tt>PathFinder</tt>: the
+ * slots from the start to the goal, both included, each next to the previous
+ * one. Paths are not modified once found, so the same path can be followed by
+ * several entities.
+ */
+public class Path
+{
+
+	private final int cells[]; // y * width + x of every slot
+	private final int width;
+
+	Path(int cells[], int width)
+	{
+		this.cells = cells;
+		this.width = width;
+	}
+
+	/**
+	 * Returns the amount of steps of the path (0 if the start is the goal).
+	 */
+	public int length()
+	{
+		return cells.length - 1;
+	}
+
+	/**
+	 * Returns the horizontal position of the slot reached after <i>step</i>
+	 * steps (0 is the start).
+	 */
+	public int getX(int step)
+	{
+		return cells[step] % width;
+	}
+
+	/**
+	 * Returns the vertical position of the slot reached after <i>step</i>
+	 * steps (0 is the start).
+	 */
+	public int getY(int step)
+	{
+		return cells[step] / width;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getDirection</b> <br>
+	 * <p>
+	 * <tt>public int getDirection(int step)</tt>
+	 * </p>
+	 * Returns the direction (<tt>SuperEntity.UP</tt>, <tt>RIGHT</tt>,
+	 * <tt>DOWN</tt>, <tt>LEFT</tt>) to move from the slot reached after
+	 * <i>step</i> steps to the next one. <br>
+	 * <br>
+	 */
+	public int getDirection(int step)
+	{
+		int delta = cells[step + 1] - cells[step];
+		if (delta == 1)
+			return SuperEntity.RIGHT;
+		if (delta == -1)
+			return SuperEntity.LEFT;
+		return delta > 0 ? SuperEntity.DOWN : SuperEntity.UP;
+	}
+
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < cells.length; i++)
+			s.append(i == 0 ? "" : " ").append("(").append(getX(i)).append(", ").append(getY(i)).append(")");
+		return s.toString();
+	}
+
+}
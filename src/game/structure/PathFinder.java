@@ -0,0 +1,278 @@
+package game.structure;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Finds paths between two slots of a map with A* over the slots not blocked
+ * by an obstacle (see <tt>Map.isObstacle</tt>). Moving entities are not
+ * obstacles, whoever follows a path waits or gives up when one is in the way.
+ * <p>
+ * The search works on arrays allocated once per map and marked with a search
+ * number instead of being cleared. Found paths are kept in a bounded cache
+ * (least recently used) that is emptied whenever an obstacle is placed or
+ * removed, not when a superentity or a walking NPC moves: paths only avoid
+ * what stands still. Paths can be found right away with <tt>find</tt> or
+ * requested with <tt>request</tt> and delivered during the map update, a few
+ * searches per tick. Only used by the thread updating the map.
+ */
+public class PathFinder
+{
+
+	/**
+	 * Receives the result of a path request.
+	 */
+	public interface Callback
+	{
+		/**
+		 * Called during the map update with the path found, or null if there
+		 * is none.
+		 */
+		void pathFound(Path path);
+	}
+
+	public static final int CACHE_SIZE = 256; // paths kept
+	public static final int TICK_BUDGET = 4096; // slots expanded per tick by the requests
+
+	private static final Path NO_PATH = new Path(new int[1], 1); // cached when there is no path
+
+	private final Map map;
+	private final int width, height;
+	private final int cost[], from[], mark[];
+	private final int heap[], heapCost[]; // open slots and their estimated total cost
+	private int heapSize, search = 0, expanded;
+	private int obstacleVersion = -1;
+	private LinkedHashMap<Long, Path> cache = new LinkedHashMap<Long, Path>(CACHE_SIZE, .75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(java.util.Map.Entry<Long, Path> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+	private List<Request> requests = new ArrayList<Request>();
+
+	private static class Request
+	{
+		private int fromX, fromY, toX, toY;
+		private Callback callback;
+	}
+
+	public PathFinder(Map map, int width, int height)
+	{
+		this.map = map;
+		this.width = width;
+		this.height = height;
+		cost = new int[width * height];
+		from = new int[width * height];
+		mark = new int[width * height]; // search number in which the slot was reached (closed if negative)
+		heap = new int[width * height * 4];
+		heapCost = new int[width * height * 4];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>find</b> <br>
+	 * <p>
+	 * <tt>public Path find(int fromX, int fromY, int toX, int toY)</tt>
+	 * </p>
+	 * Returns the shortest path between the two slots, or null if there is
+	 * none. <br>
+	 * <br>
+	 */
+	public Path find(int fromX, int fromY, int toX, int toY)
+	{
+		if (!inMap(fromX, fromY) || !inMap(toX, toY))
+			return null;
+
+		if (obstacleVersion != map.getObstacleVersion())
+		{
+			cache.clear();
+			obstacleVersion = map.getObstacleVersion();
+		}
+
+		Long key = ((long) (fromY * width + fromX) << 32) | (toY * width + toX);
+		Path path = cache.get(key);
+		if (path == null)
+		{
+			path = search(fromY * width + fromX, toY * width + toX);
+			cache.put(key, path == null ? NO_PATH : path);
+		}
+		return path == NO_PATH ? null : path;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>request</b> <br>
+	 * <p>
+	 * <tt>public void request(int fromX, int fromY, int toX, int toY, Callback callback)</tt>
+	 * </p>
+	 * Requests a path to be found during the next map updates. The callback
+	 * receives it on the thread updating the map. <br>
+	 * <br>
+	 */
+	public void request(int fromX, int fromY, int toX, int toY, Callback callback)
+	{
+		Request request = new Request();
+		request.fromX = fromX;
+		request.fromY = fromY;
+		request.toX = toX;
+		request.toY = toY;
+		request.callback = callback;
+		requests.add(request);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>update</b> <br>
+	 * <p>
+	 * <tt>public void update()</tt>
+	 * </p>
+	 * Answers the pending requests in the order they were made until
+	 * <tt>TICK_BUDGET</tt> slots have been expanded, the rest wait for the
+	 * next update. Called by the map. <br>
+	 * <br>
+	 */
+	public void update()
+	{
+		int budget = TICK_BUDGET, answered = 0;
+		while (answered < requests.size() && budget > 0)
+		{
+			Request request = requests.get(answered++);
+			expanded = 0;
+			Path path = find(request.fromX, request.fromY, request.toX, request.toY);
+			budget -= expanded;
+			request.callback.pathFound(path);
+		}
+		requests.subList(0, answered).clear();
+	}
+
+	private boolean inMap(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	private Path search(int start, int goal)
+	{
+		if (map.isObstacle(goal % width, goal / width))
+			return null;
+
+		if (++search == Integer.MAX_VALUE) // start again, the marks of the old searches could be taken as current
+		{
+			java.util.Arrays.fill(mark, 0);
+			search = 1;
+		}
+		heapSize = 0;
+
+		mark[start] = search;
+		cost[start] = 0;
+		from[start] = -1;
+		push(start, estimate(start, goal));
+
+		while (heapSize > 0)
+		{
+			int cell = pop();
+			if (mark[cell] == -search)
+				continue; // already closed through a cheaper entry
+			if (cell == goal)
+				return buildPath(goal);
+
+			mark[cell] = -search;
+			expanded++;
+
+			int x = cell % width, y = cell / width;
+			if (y > 0)
+				open(cell, cell - width, goal);
+			if (x < width - 1)
+				open(cell, cell + 1, goal);
+			if (y < height - 1)
+				open(cell, cell + width, goal);
+			if (x > 0)
+				open(cell, cell - 1, goal);
+		}
+		return null;
+	}
+
+	private void open(int cell, int next, int goal)
+	{
+		if (mark[next] == -search)
+			return;
+		if (next != goal && map.isObstacle(next % width, next / width))
+			return;
+
+		int nextCost = cost[cell] + 1;
+		if (mark[next] == search && cost[next] <= nextCost)
+			return;
+
+		mark[next] = search;
+		cost[next] = nextCost;
+		from[next] = cell;
+		push(next, nextCost + estimate(next, goal));
+	}
+
+	private int estimate(int cell, int goal)
+	{
+		return Math.abs(cell % width - goal % width) + Math.abs(cell / width - goal / width);
+	}
+
+	private Path buildPath(int goal)
+	{
+		int steps = 0;
+		for (int cell = goal; from[cell] != -1; cell = from[cell])
+			steps++;
+
+		int cells[] = new int[steps + 1];
+		for (int cell = goal, i = steps; i >= 0; cell = from[cell], i--)
+			cells[i] = cell;
+		return new Path(cells, width);
+	}
+
+	private void push(int cell, int f)
+	{
+		if (heapSize == heap.length) // cannot happen with 4 entries per slot, but never overflow
+			return;
+
+		int i = heapSize++;
+		while (i > 0)
+		{
+			int parent = (i - 1) / 2;
+			if (heapCost[parent] <= f)
+				break;
+			heap[i] = heap[parent];
+			heapCost[i] = heapCost[parent];
+			i = parent;
+		}
+		heap[i] = cell;
+		heapCost[i] = f;
+	}
+
+	private int pop()
+	{
+		int top = heap[0];
+		int cell = heap[--heapSize], f = heapCost[heapSize];
+
+		int i = 0;
+		while (true)
+		{
+			int child = i * 2 + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && heapCost[child + 1] < heapCost[child])
+				child++;
+			if (heapCost[child] >= f)
+				break;
+			heap[i] = heap[child];
+			heapCost[i] = heapCost[child];
+			i = child;
+		}
+		heap[i] = cell;
+		heapCost[i] = f;
+		return top;
+	}
+
+}
@@ -11,10 +11,9 @@ import game.entities.superentities.Monster;
 import game.entities.superentities.Player;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Random;
 
 public class Slot
@@ -22,11 +21,37 @@ public class Slot
 
 	public static int SIZE; // set by Main class in the game config
 
+	// item offsets in fifths of a slot: side by side for 1 to 3 items, scattered from 4 on
+	private static final int LAYOUT_X[][] = { {}, { 0 }, { -1, 1 }, { -1, 1, 0 } }, LAYOUT_Y[][] = { {}, { 0 },
+			{ -1, 1 }, { 1, 1, -1 } };
+	private static final double SCATTER_X[] = new double[32], SCATTER_Y[] = new double[32];
+
+	static
+	{
+		Random random = new Random(32); // fixed, the same scatter in every slot and every run
+		for (int i = 0; i < SCATTER_X.length; i++)
+		{
+			SCATTER_X[i] = random.nextDouble() * 3 - 1.5;
+			SCATTER_Y[i] = random.nextDouble() * 3 - 1.5;
+		}
+	}
+
 	private Entity strongEntity;
 	private Tile tile;
 	private Portal portal;
-	private List<Item> items = new ArrayList<Item>();
+	private final List<Item> items = new ArrayList<Item>(); // in the order they were dropped
+	private final List<Item> itemsView = Collections.unmodifiableList(items);
+	private final java.util.Map<Integer, Item> stacks = new HashMap<Integer, Item>(); // stackable items by id
 	private Object object; // not strong, only its blocks are strong
+	private final Map map; // told when the strong entity changes
+	private final int x, y;
+
+	public Slot(Map map, int x, int y)
+	{
+		this.map = map;
+		this.x = x;
+		this.y = y;
+	}
 
 	/**
 	 * 
@@ -35,22 +60,87 @@ public class Slot
 	 * <p>
 	 * <tt>public List<Entity> getAll()</tt>
 	 * </p>
-	 * Returns a list with all the entities in the slot. <br>
+	 * Returns a list with all the entities in the slot. Kept for
+	 * compatibility, use <tt>forEachEntity</tt> to go over them without
+	 * allocating. <br>
 	 * <br>
 	 */
 	public List<Entity> getAll()
 	{
-		List<Entity> all = new ArrayList<Entity>();
-		all.addAll(Arrays.asList(strongEntity, tile, portal, object));
-		all.addAll(items);
-		all.removeAll(Collections.singleton(null)); // removes all null elements
+		final List<Entity> all = new ArrayList<Entity>(4 + items.size());
+		forEachEntity(new EntityVisitor<Entity>()
+		{
+			public boolean visit(Entity entity)
+			{
+				return all.add(entity);
+			}
+		});
 		return all;
 	}
 
+	/**
+	 * 
+	 * <br>
+	 * <b>forEachEntity</b> <br>
+	 * <p>
+	 * <tt>public boolean forEachEntity(EntityVisitor&lt;? super Entity&gt; visitor)</tt>
+	 * </p>
+	 * Visits the entities in the slot in the order of <tt>getAll()</tt>: the
+	 * strong entity, the tile, the portal, the object and the items. The
+	 * visitor must not add or remove entities of the slot. Returns false if
+	 * the visitor stopped. <br>
+	 * <br>
+	 */
+	public boolean forEachEntity(EntityVisitor<? super Entity> visitor)
+	{
+		return forEachEntity(Entity.class, visitor);
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>forEachEntity</b> <br>
+	 * <p>
+	 * <tt>public &lt;T extends Entity&gt; boolean forEachEntity(Class&lt;T&gt; type, EntityVisitor&lt;? super T&gt; visitor)</tt>
+	 * </p>
+	 * Visits the entities in the slot that are of the given type. <br>
+	 * <br>
+	 * 
+	 * @see #forEachEntity(EntityVisitor)
+	 */
+	public <T extends Entity> boolean forEachEntity(Class<T> type, EntityVisitor<? super T> visitor)
+	{
+		if (!visit(strongEntity, type, visitor) || !visit(tile, type, visitor) || !visit(portal, type, visitor)
+				|| !visit(object, type, visitor))
+			return false;
+
+		for (int i = 0; i < items.size(); i++)
+		{
+			if (!visit(items.get(i), type, visitor))
+				return false;
+		}
+		return true;
+	}
+
+	private static <T extends Entity> boolean visit(Entity entity, Class<T> type, EntityVisitor<? super T> visitor)
+	{
+		if (entity == null || !type.isInstance(entity))
+			return true;
+		return visitor.visit(type.cast(entity));
+	}
+
 	public void update()
 	{
-		for (Entity e : getAll())
-			e.update();
+		if (strongEntity != null)
+			strongEntity.update();
+		if (tile != null)
+			tile.update();
+		if (portal != null)
+			portal.update();
+		if (object != null)
+			object.update();
+		for (int i = 0; i < items.size(); i++)
+			items.get(i).update();
 	}
 
 	/**
@@ -119,11 +209,13 @@ public class Slot
 			return;
 
 		strongEntity = entity;
+		map.setOccupied(x, y, entity);
 	}
 
 	public void removeStrongEntity()
 	{
 		strongEntity = null;
+		map.setOccupied(x, y, null);
 	}
 
 	public Tile getTile()
@@ -136,6 +228,16 @@ public class Slot
 		this.tile = tile;
 	}
 
+	public int getX()
+	{
+		return x;
+	}
+
+	public int getY()
+	{
+		return y;
+	}
+
 	public Portal getPortal()
 	{
 		return portal;
@@ -157,40 +259,103 @@ public class Slot
 			this.object = object;
 	}
 
+	/**
+	 * Returns the items on the slot, a stack per id for the stackable items
+	 * and one entry per equip, in the order they were dropped. The list can
+	 * not be changed, use <tt>addItem</tt> and <tt>removeItem</tt>.
+	 */
 	public List<Item> getItems()
 	{
-		return items;
+		return itemsView;
 	}
 
-	public void addItem(Item item)
+	/**
+	 * 
+	 * <br>
+	 * <b>addItem</b> <br>
+	 * <p>
+	 * <tt>public boolean addItem(Item item)</tt>
+	 * </p>
+	 * Drops an item on the slot. A stackable item already on the slot only
+	 * has its quantity raised, so dropping many items costs the same as
+	 * dropping one. Returns true if the item itself is kept by the slot,
+	 * false if it joined a stack and is no longer used. <br>
+	 * <br>
+	 */
+	public boolean addItem(Item item)
 	{
-		items.add(item);
-		items = Item.stack(items);
-		if (items.size() < 4)
+		if (item.isStackable())
 		{
-			updateItemsRender();
-		} else
-		{
-			Random random = new Random();
-			items.get(items.size() - 1).setRenderOffset((int) (Slot.SIZE / 5 * (random.nextDouble() * 3 - 1.5)),
-					(int) (Slot.SIZE / 5 * (random.nextDouble() * 3 - 1.5)));
+			Item stack = stacks.get(item.id());
+			if (stack != null)
+			{
+				if (stack == item)
+					return true;
+				stack.add(item.getQuantity());
+				return false;
+			}
+			stacks.put(item.id(), item);
 		}
+
+		items.add(item);
+		if (items.size() <= 4)
+			updateItemsRender(); // from 4 items on every item keeps its own offset
+		else
+			setItemRender(items.size() - 1);
+		return true;
 	}
 
+	/**
+	 * Removes every item with the given id from the slot.
+	 */
 	public void removeItem(int id)
 	{
-		ListIterator<Item> it = items.listIterator(); // ListIterator must be used instead of iterator when removing items
-		while (it.hasNext())
+		if (stacks.remove(id) != null || hasEquip(id))
+		{
+			for (int i = items.size() - 1; i >= 0; i--)
+			{
+				if (items.get(i).id() == id)
+					items.remove(i);
+			}
+			if (items.size() < 4)
+				updateItemsRender();
+		}
+	}
+
+	/**
+	 * Removes the item (the whole stack if it is stackable) from the slot.
+	 */
+	public void removeItem(Item item)
+	{
+		if (item.isStackable())
+		{
+			if (stacks.get(item.id()) != item)
+				return; // not on this slot
+			stacks.remove(item.id());
+		}
+
+		for (int i = items.size() - 1; i >= 0; i--)
 		{
-			if (it.next().id() == id)
+			if (items.get(i) == item)
 			{
-				it.remove();
+				items.remove(i);
 				if (items.size() < 4)
 					updateItemsRender();
+				return;
 			}
 		}
 	}
 
+	private boolean hasEquip(int id)
+	{
+		for (int i = 0; i < items.size(); i++)
+		{
+			if (items.get(i).id() == id && !items.get(i).isStackable())
+				return true;
+		}
+		return false;
+	}
+
 	public void remove(Entity entity)
 	{
 		if (entity == tile)
@@ -198,41 +363,31 @@ public class Slot
 		else if (entity == portal)
 			portal = null;
 		else if (entity == strongEntity)
-			strongEntity = null;
+			removeStrongEntity();
 		else if (entity instanceof Item)
-		{
-			removeItem(entity.id());
-			if (items.size() < 4)
-				updateItemsRender();
-		}
+			removeItem((Item) entity);
 	}
 
 	private void updateItemsRender()
+	{
+		for (int i = 0; i < items.size(); i++)
+			setItemRender(i);
+	}
+
+	/**
+	 * Places the item at <i>index</i> from the precomputed offsets: side by
+	 * side when there are up to 3 items, scattered over the slot from 4 on.
+	 */
+	private void setItemRender(int index)
 	{
 		final int OFFSET = Slot.SIZE / 5;
-		switch (items.size())
+		int count = items.size();
+		if (count <= 3)
+			items.get(index).setRenderOffset(LAYOUT_X[count][index] * OFFSET, LAYOUT_Y[count][index] * OFFSET);
+		else
 		{
-		case 0:
-		case 1:
-			return;
-		case 2:
-			items.get(0).setRenderOffset(-OFFSET, -OFFSET);
-			items.get(1).setRenderOffset(OFFSET, OFFSET);
-			return;
-		case 3:
-			items.get(0).setRenderOffset(-OFFSET, OFFSET);
-			items.get(1).setRenderOffset(OFFSET, OFFSET);
-			items.get(2).setRenderOffset(0, -OFFSET);
-			return;
-		default:
-			Random random = new Random(System.nanoTime());
-			for (Item item : items)
-			{
-				double offX = OFFSET * (random.nextDouble() * 3 - 1.5);
-				double offY = OFFSET * (random.nextDouble() * 3 - 1.5);
-				item.setRenderOffset((int) offX, (int) offY);
-			}
-			return;
+			int scatter = index % SCATTER_X.length;
+			items.get(index).setRenderOffset((int) (SCATTER_X[scatter] * OFFSET), (int) (SCATTER_Y[scatter] * OFFSET));
 		}
 	}
 
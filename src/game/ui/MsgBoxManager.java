@@ -11,6 +11,7 @@ import java.awt.Font;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.GL11;
 
+import game.util.Input;
 import game.util.Util;
 
 /**
@@ -137,9 +138,9 @@ public class MsgBoxManager
 
 	public static void input()
 	{ // the keyboard events are only received if it is active
-		if (Keyboard.getEventKeyState())
+		if (Input.getEventKeyState())
 		{
-			switch (Keyboard.getEventKey())
+			switch (Input.getEventKey())
 			{
 			case Keyboard.KEY_ESCAPE:
 				state = -1;
@@ -1,7 +1,6 @@
 package game.ui;
 
-import game.entities.Entity;
-import game.entities.item.Item;
+import game.entities.item.ItemStack;
 import game.entities.superentities.Player;
 import game.structure.GameObject;
 import game.util.XMLParser;
@@ -12,7 +11,7 @@ import java.util.Map;
 
 public class Shop extends GameObject{
 
-	List<Item> items = new ArrayList<Item>();
+	List<ItemStack> items = new ArrayList<ItemStack>(); // stock, a copy is given on every sale
 	
 	public Shop(int id)
 	{
@@ -31,7 +30,7 @@ public class Shop extends GameObject{
 		
 		for(Map<String, String> item: shopItems)
 		{
-			items.add((Item) Entity.createEntity(Integer.parseInt(item.get("id"))));
+			items.add(ItemStack.create(Integer.parseInt(item.get("id")), 1));
 		}
 		
 	}
@@ -44,7 +43,7 @@ public class Shop extends GameObject{
 	public boolean buy(int id, Player player)
 	{
 		
-		Item item = items.get(id);
+		ItemStack item = items.get(id);
 		int price = 100;
 		
 		if(player.getGold() < price)
@@ -53,7 +52,7 @@ public class Shop extends GameObject{
 		MsgBoxManager.sendText("Are you sure you want to buy " + item + " for $" + price + "?", true);
 		if(MsgBoxManager.getSelection())
 		{
-			if(player.addItem(item))
+			if(player.addItem(item.copy()))
 			{
 				player.gainGold(-price);
 				return true;
@@ -6,7 +6,6 @@ import static org.lwjgl.opengl.GL11.glColor4f;
 import static org.lwjgl.opengl.GL11.glEnd;
 import static org.lwjgl.opengl.GL11.glVertex2f;
 import game.Main;
-import game.entities.superentities.Player;
 import game.features.Stat;
 import game.structure.MapManager;
 import game.ui.window.Window;
@@ -28,7 +27,19 @@ public class UserInterface
 	private static ArrayList<String> notifications = new ArrayList<String>();
 	private static ArrayList<Long> times = new ArrayList<Long>(); // TODO change to a queue
 
-	static
+	/**
+	 * 
+	 * <br>
+	 * <b>loadFonts</b>
+	 * <br>
+	 * <p>
+	 * <tt>public static void loadFonts()</tt>
+	 * </p>
+	 * Loads the fonts used by the interface. Needs a display, it is not called
+	 * when the game runs headless.
+	 * <br><br>
+	 */
+	public static void loadFonts()
 	{
 		// load fonts
 		System.out.println("Loading 0%");
@@ -51,7 +62,7 @@ public class UserInterface
 		Util.useFont("Arial", Font.BOLD, 14, Color.black);
 		for (int i = notifications.size() - 1; i >= 0; i--)
 		{
-			if (times.get(i) > System.currentTimeMillis())
+			if (times.get(i) > Main.getClock().getMillis())
 			{
 				Util.write(notifications.get(i), 10, 80 + i * Util.getFontHeight());
 			} else
@@ -67,7 +78,7 @@ public class UserInterface
 		// HP BAR
 		int width = 128;
 		int limit = (int) (width * MapManager.getMap().getPlayer().getHP() / MapManager.getMap().getPlayer()
-				.getStat(Player.TOTAL + Stat.MAXHP.ID));
+				.getStat(Stat.MAXHP));
 		glColor4f(1f, 0f, 0f, .6f);
 		glBegin(GL_QUADS);
 		glVertex2f(10, 10);
@@ -86,7 +97,7 @@ public class UserInterface
 
 		// MP BAR
 		limit = (int) (width * MapManager.getMap().getPlayer().getMP() / MapManager.getMap().getPlayer()
-				.getStat(Player.TOTAL + Stat.MAXMP.ID));
+				.getStat(Stat.MAXMP));
 		glColor4f(0f, 0f, 1f, .6f);
 		glBegin(GL_QUADS);
 		glVertex2f(200, 10);
@@ -143,8 +154,14 @@ public class UserInterface
 	 */
 	public static void sendNotification(String s)
 	{
+		// also expire here, the list is only pruned while rendering otherwise
+		while (!times.isEmpty() && times.get(0) <= Main.getClock().getMillis())
+		{
+			notifications.remove(0);
+			times.remove(0);
+		}
 		notifications.add(s);
-		times.add(System.currentTimeMillis() + 2000L);
+		times.add(Main.getClock().getMillis() + 2000L);
 	}
 
 	
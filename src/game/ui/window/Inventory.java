@@ -9,20 +9,19 @@ import static org.lwjgl.opengl.GL11.glTranslatef;
 import static org.lwjgl.opengl.GL11.glVertex2f;
 import game.Main;
 import game.entities.item.EquipItem;
-import game.entities.item.Item;
-import game.entities.item.UsableItem;
+import game.entities.item.ItemBag;
+import game.entities.item.ItemStack;
 import game.features.Stat;
 import game.structure.MapManager;
 import game.structure.Slot;
+import game.util.Input;
 import game.util.Util;
 
 import java.awt.Color;
 import java.awt.Font;
 import java.util.ArrayList;
-import java.util.List;
 
 import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import org.lwjgl.util.Dimension;
 import org.lwjgl.util.Point;
 import org.newdawn.slick.opengl.Texture;
@@ -30,7 +29,9 @@ import org.newdawn.slick.opengl.Texture;
 public class Inventory extends Window
 {
 
-	List<Item> items = MapManager.getMap().getPlayer().getItems();
+	private static Texture descriptionTexture; // loaded on the first render
+
+	ItemBag items = MapManager.getMap().getPlayer().getItems();
 	private int click = -1;
 	private long timeOfClick = 0L;
 	private boolean itemGrabbed = false;
@@ -48,32 +49,32 @@ public class Inventory extends Window
 		// TRY SAVE MOUSE STATE AND COMPARE CURRENT STATE TO DETERMINE IF MOUSE
 		// MOVED OR RELEASED
 
-		if (Mouse.getEventButtonState())
+		if (Input.getEventButtonState())
 		{
 
 			System.out.println("mouse click");
 
 			setPressed(true);
 
-			int clickIndex = getClickedItem(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1);
+			int clickIndex = getClickedItem(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1);
 			if (clickIndex != -1)
 			{
 				
 			}
-		} else if (!Mouse.getEventButtonState())
+		} else if (!Input.getEventButtonState())
 		{
-			int dX = Mouse.getDX();
-			int dY = Mouse.getDY();
+			int dX = Input.getMouseDX();
+			int dY = Input.getMouseDY();
 			if (dX == 0 && dY == 0)
 				System.out.println("Mouse Released");
 			else
 				System.out.println("Mouse Moved");
 			if (!itemGrabbed)
 			{
-				if (Mouse.isButtonDown(0) && isPressed())
+				if (Input.isButtonDown(0) && isPressed())
 				{
-					int clickIndex = getClickedItem(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1);
-					Item clickedItem = null;
+					int clickIndex = getClickedItem(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1);
+					ItemStack clickedItem = null;
 					if (clickIndex != -1)
 						clickedItem = items.get(clickIndex);
 					if (clickedItem == null)
@@ -96,25 +97,25 @@ public class Inventory extends Window
 			}
 		}
 
-		if (Mouse.getEventButtonState())
+		if (Input.getEventButtonState())
 		{
-			if (timeOfClick + 200L < System.currentTimeMillis())
+			if (timeOfClick + 200L < Main.getClock().getMillis()) // game time so a replayed double click stays one
 			{
-				click = getClickedItem(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1);
-				timeOfClick = System.currentTimeMillis();
-			} else if (getClickedItem(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1) == click
+				click = getClickedItem(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1);
+				timeOfClick = Main.getClock().getMillis();
+			} else if (getClickedItem(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1) == click
 					&& click <= items.size() - 1 && click >= 0)
 			{
-				Item item = items.get(click);
-				if (item instanceof UsableItem)
+				ItemStack stack = items.get(click);
+				if (stack.isUsable())
 				{
-					MapManager.getMap().getPlayer().useItem(item);
-				} else if (item instanceof EquipItem)
+					MapManager.getMap().getPlayer().useItem(stack);
+				} else if (stack.getEquip() != null)
 				{
-					EquipItem equip = (EquipItem) item;
+					EquipItem equip = stack.getEquip();
 					MapManager.getMap().getPlayer().removeEquip(equip.getType());
 					MapManager.getMap().getPlayer().addEquip(equip);
-					MapManager.getMap().getPlayer().removeItem(item);
+					MapManager.getMap().getPlayer().removeItem(stack);
 				}
 				click = -1;
 			}
@@ -144,7 +145,7 @@ public class Inventory extends Window
 		{
 			
 			items.get(i).render(getPosition().getX() + 7 + 32 * (i % 5), getPosition().getY() + 30 + 32 * (i / 5));
-			if (!(items.get(i) instanceof EquipItem))
+			if (items.get(i).isStackable())
 			{
 				Util.write(Integer.toString(items.get(i).getQuantity()), getPosition().getX() + 7 + 32 * (i % 5) + 3,
 						getPosition().getY() + 30 + 32 * (i / 5));
@@ -156,16 +157,16 @@ public class Inventory extends Window
 		Util.write(Integer.toString(MapManager.getMap().getPlayer().getGold()), getPosition().getX() + 37,
 				getPosition().getY() + getSize().getHeight() - 25);
 
-		int mouseHover = getClickedItem(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1);
+		int mouseHover = getClickedItem(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1);
 
 		if (mouseHover != -1)
 		{
-			Item item = items.get(mouseHover);
+			ItemStack item = items.get(mouseHover);
 
 			String lines[];
-			if (item instanceof EquipItem)
+			if (item.getEquip() != null)
 			{
-				EquipItem equip = ((EquipItem) item);
+				EquipItem equip = item.getEquip();
 				ArrayList<String> linesList = new ArrayList<String>();
 				for (int i = 0; i < Stat.values().length; i++)
 				{
@@ -187,15 +188,17 @@ public class Inventory extends Window
 				lines = Util.tokenizeText(item.getDescription(), 190, 4);
 			}
 
-			Texture tex = Util.getTexture("UI/window/itemDesc.png");
+			if (descriptionTexture == null)
+				descriptionTexture = Util.getTexture("UI/window/itemDesc.png");
+			Texture tex = descriptionTexture;
 			
 			glColor4f(1, 1, 1, .5f);
 
-			Util.render(tex, Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1, 200, Util.getFontHeight() * lines.length + 55, tex.getTextureWidth(), tex.getTextureHeight());
+			Util.render(tex, Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1, 200, Util.getFontHeight() * lines.length + 55, tex.getTextureWidth(), tex.getTextureHeight());
 			
 			//render a white square with half transparency
 			glLoadIdentity();
-			glTranslatef(Mouse.getX(), Main.DIM.getHeight() - Mouse.getY() + 1, 0);
+			glTranslatef(Input.getMouseX(), Main.DIM.getHeight() - Input.getMouseY() + 1, 0);
 			glBegin(GL_QUADS);
 			glVertex2f(10, 10);
 			glVertex2f(42, 10);
@@ -206,14 +209,14 @@ public class Inventory extends Window
 
 			glColor4f(1, 1, 1, 1); //return to full opacity
 
-			item.render(Mouse.getX() + 10, Main.DIM.getHeight() - Mouse.getY() + 1 + 10);
+			item.render(Input.getMouseX() + 10, Main.DIM.getHeight() - Input.getMouseY() + 1 + 10);
 			
-			Util.write(item.getName(), Mouse.getX() + 42 + 10, Main.DIM.getHeight() - Mouse.getY() + 1 + 10);
+			Util.write(item.getName(), Input.getMouseX() + 42 + 10, Main.DIM.getHeight() - Input.getMouseY() + 1 + 10);
 
 			for (int i = 0; i < lines.length; i++)
 			{
-				Util.write(lines[i], Mouse.getX() + 10,
-						Main.DIM.getHeight() - Mouse.getY() + 1 + 50 + i * Util.getFontHeight());
+				Util.write(lines[i], Input.getMouseX() + 10,
+						Main.DIM.getHeight() - Input.getMouseY() + 1 + 50 + i * Util.getFontHeight());
 			}
 		}
 	}
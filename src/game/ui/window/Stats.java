@@ -37,12 +37,12 @@ public class Stats extends Window{
 		Util.useFont("Courier New", Font.BOLD, 14, Color.white);
 		Util.write(Integer.toString(player.getLevel()), getX()+X, getY()+Y_INTERVAL[0]);
 		Util.write(Integer.toString(player.getExp()), getX()+X, getY()+Y_INTERVAL[1]);
-		Util.write(Integer.toString(player.getStat(TOTAL+MAXHP.ID)), getX()+X, getY()+Y_INTERVAL[2]);
-		Util.write(Integer.toString(player.getStat(TOTAL+MAXMP.ID)), getX()+X, getY()+Y_INTERVAL[3]);
-		Util.write(Integer.toString(player.getStat(TOTAL+ATK.ID)), getX()+X, getY()+Y_INTERVAL[4]);
+		Util.write(Integer.toString(player.getStat(MAXHP)), getX()+X, getY()+Y_INTERVAL[2]);
+		Util.write(Integer.toString(player.getStat(MAXMP)), getX()+X, getY()+Y_INTERVAL[3]);
+		Util.write(Integer.toString(player.getStat(ATK)), getX()+X, getY()+Y_INTERVAL[4]);
 		//TODO: Defense
 		//Util.write(Integer.toString(player.getStat(TOTAL+.ID)), getX()+X, getY()+Y_INTERVAL[5]);
-		Util.write(Integer.toString(player.getStat(TOTAL+STR.ID)), getX()+X, getY()+Y_INTERVAL[6]);
+		Util.write(Integer.toString(player.getStat(STR)), getX()+X, getY()+Y_INTERVAL[6]);
 		Util.write(Integer.toString((int)(player.getAverageDamage()+.5)), getX()+X, getY()+Y_INTERVAL[7]);
 	}
 	
@@ -2,10 +2,10 @@ package game.ui.window;
 
 import static org.lwjgl.opengl.GL11.glColor4f;
 import game.Main;
+import game.util.Input;
 import game.util.Util;
 
 import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import org.lwjgl.util.Dimension;
 import org.lwjgl.util.Point;
 import org.newdawn.slick.opengl.Texture;
@@ -32,7 +32,6 @@ public abstract class Window
 	{
 		position = pos;
 		size = s;
-		texture = Util.getTexture("UI/window/" + getClass().getSimpleName().toLowerCase() + ".png");
 	}
 
 	public static void renderAll()
@@ -47,24 +46,23 @@ public abstract class Window
 	public void render()
 	{
 		glColor4f(1, 1, 1, .6f);
-		Util.render(texture, getPosition().getX(), getPosition().getY(), size.getWidth(), size.getHeight(), 174, 256);
+		Util.render(getTexture(), getPosition().getX(), getPosition().getY(), size.getWidth(), size.getHeight(), 174, 256);
 		glColor4f(1, 1, 1, 1);
 	}
 
 	public static void keyboardInput()
 	{
-		if (Keyboard.getEventKeyState())
+		if (Input.getEventKeyState())
 		{ // key released
 			for (Window w : windows)
 			{
-				if (Keyboard.getEventKey() == w.getKey())
+				if (Input.getEventKey() == w.getKey())
 				{ // each window has a key assigned to open it
 					w.toggleActive(); // open/close window
-					// if for some reason the window goes out of the screen. (this might happen because mouse events and the game run on different threads)
 					if (w.getX() > Main.DIM.getWidth() || w.getX() + w.getWidth() < 0
 							|| w.getY() > Main.DIM.getHeight() || w.getY() + w.getHeight() < 0) 
 						w.setPosition(100, 100);
-				} else if (Keyboard.getEventKey() == Keyboard.KEY_ESCAPE) // close all
+				} else if (Input.getEventKey() == Keyboard.KEY_ESCAPE) // close all
 				{ 
 					w.close();
 				}
@@ -76,9 +74,9 @@ public abstract class Window
 	{
 		for (Window w : windows)
 		{
-			if (Mouse.getX() >= w.getX() && Mouse.getX() <= w.getX() + w.getWidth()
-					&& Main.DIM.getHeight() - Mouse.getY() + 1 >= w.getY()
-					&& Main.DIM.getHeight() - Mouse.getY() + 1 <= w.getY() + w.getHeight())
+			if (Input.getMouseX() >= w.getX() && Input.getMouseX() <= w.getX() + w.getWidth()
+					&& Main.DIM.getHeight() - Input.getMouseY() + 1 >= w.getY()
+					&& Main.DIM.getHeight() - Input.getMouseY() + 1 <= w.getY() + w.getHeight())
 			{
 				if (w.isActive())
 				{
@@ -172,6 +170,8 @@ public abstract class Window
 	
 	public Texture getTexture()
 	{
+		if (texture == null) // loaded on the first render so windows can exist without a display
+			texture = Util.getTexture("UI/window/" + getClass().getSimpleName().toLowerCase() + ".png");
 		return texture;
 	}
 	
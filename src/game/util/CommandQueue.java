@@ -0,0 +1,134 @@
+package game.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue of commands posted by any thread and run by the
+ * game thread at the start of each tick. Background threads (timers, loaders,
+ * scripts) post a command instead of changing the game objects themselves, so
+ * the simulation is only ever changed by the thread running the tick.
+ * <p>
+ * The queue is a ring of slots, each with a sequence number telling whether
+ * it is free or holds a command. Producers claim a slot with a single
+ * compare-and-set, the consumer never waits for a lock. Nothing is allocated
+ * when posting, so commands posted often should be created once and reused.
+ */
+public class CommandQueue
+{
+
+	private final int mask;
+	private final AtomicReferenceArray<Runnable> commands;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong(0); // next position to be claimed by a producer
+	private long head = 0; // next position to be run, only used by the consumer
+
+	/**
+	 * @param capacity
+	 *            - The maximum amount of pending commands, rounded up to a
+	 *            power of two.
+	 */
+	public CommandQueue(int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		commands = new AtomicReferenceArray<Runnable>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>offer</b> <br>
+	 * <p>
+	 * <tt>public boolean offer(Runnable command)</tt>
+	 * </p>
+	 * Posts a command to be run at the start of the next tick. Can be called
+	 * from any thread. Returns false if the queue is full. <br>
+	 * <br>
+	 */
+	public boolean offer(Runnable command)
+	{
+		while (true)
+		{
+			long position = tail.get();
+			int index = (int) position & mask;
+			long sequence = sequences.get(index);
+
+			if (sequence == position)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					commands.lazySet(index, command);
+					sequences.lazySet(index, position + 1); // publishes the command
+					return true;
+				}
+			} else if (sequence < position)
+			{
+				return false; // the slot still holds a command from the previous lap
+			}
+			// else another producer claimed the position, try the next one
+		}
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>post</b> <br>
+	 * <p>
+	 * <tt>public void post(Runnable command)</tt>
+	 * </p>
+	 * Posts a command, waiting for the game thread to make room if the queue
+	 * is full. Must not be called from the game thread. <br>
+	 * <br>
+	 */
+	public void post(Runnable command)
+	{
+		while (!offer(command))
+			Thread.yield();
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>drain</b> <br>
+	 * <p>
+	 * <tt>public int drain()</tt>
+	 * </p>
+	 * Runs the commands posted so far in the order they were posted. Must only
+	 * be called from the game thread. Commands posted while draining are left
+	 * for the next call. Returns the amount of commands run. <br>
+	 * <br>
+	 */
+	public int drain()
+	{
+		long end = tail.get();
+		int count = 0;
+
+		while (head < end)
+		{
+			int index = (int) head & mask;
+			if (sequences.get(index) != head + 1)
+				break; // claimed but not published yet, run it next tick
+
+			Runnable command = commands.get(index);
+			commands.lazySet(index, null);
+			sequences.lazySet(index, head + mask + 1); // frees the slot for the next lap
+			head++;
+			count++;
+
+			command.run();
+		}
+
+		return count;
+	}
+
+	public int capacity()
+	{
+		return mask + 1;
+	}
+
+}
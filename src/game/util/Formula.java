@@ -0,0 +1,433 @@
+package game.util;
+
+import java.util.Map;
+
+/**
+ * An arithmetic expression compiled once into a tree of nodes, so evaluating
+ * it is a few virtual calls with no parsing or allocation. The variables are
+ * read from an array by the index given to their name when compiling, filled
+ * by whoever evaluates the formula.
+ * <p>
+ * Formulas support numbers, variables, <tt>+ - * / % ^</tt>, parentheses, the
+ * functions <tt>min, max, abs, floor, ceil, round, sqrt, pow, clamp</tt> and
+ * tables of integers used as functions, <tt>expTable(LEVEL - 1)</tt>, whose
+ * index is kept within the table. Parts without variables are computed when
+ * compiling.
+ *
+ * @see game.features.Formulas
+ */
+public abstract class Formula
+{
+
+	/**
+	 * Returns the value of the formula for the given variables.
+	 */
+	public abstract double eval(double vars[]);
+
+	/**
+	 * Returns true if the formula does not depend on any variable.
+	 */
+	protected boolean isConstant()
+	{
+		return false;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>compile</b> <br>
+	 * <p>
+	 * <tt>public static Formula compile(String source, Map&lt;String, Integer&gt; variables, Map&lt;String, int[]&gt; tables)</tt>
+	 * </p>
+	 * Compiles the formula, where <i>variables</i> gives the index of each
+	 * variable name in the array passed to <tt>eval</tt>. Throws
+	 * IllegalArgumentException if the formula is not valid. <br>
+	 * <br>
+	 */
+	public static Formula compile(String source, Map<String, Integer> variables, Map<String, int[]> tables)
+	{
+		Parser parser = new Parser(source, variables, tables);
+		Formula formula = parser.expression();
+		parser.skipSpaces();
+		if (parser.pos < source.length())
+			throw parser.error("unexpected '" + source.charAt(parser.pos) + "'");
+		return formula;
+	}
+
+	public static Formula constant(final double value)
+	{
+		return new Formula()
+		{
+			public double eval(double vars[])
+			{
+				return value;
+			}
+
+			protected boolean isConstant()
+			{
+				return true;
+			}
+		};
+	}
+
+	private static Formula variable(final int index)
+	{
+		return new Formula()
+		{
+			public double eval(double vars[])
+			{
+				return vars[index];
+			}
+		};
+	}
+
+	private static Formula table(final int table[], final Formula index)
+	{
+		return new Formula()
+		{
+			public double eval(double vars[])
+			{
+				int i = (int) index.eval(vars);
+				return table[i < 0 ? 0 : i >= table.length ? table.length - 1 : i];
+			}
+		};
+	}
+
+	private static Formula negate(final Formula a)
+	{
+		return fold(new Formula()
+		{
+			public double eval(double vars[])
+			{
+				return -a.eval(vars);
+			}
+		}, a, a);
+	}
+
+	private static Formula operation(char op, final Formula a, final Formula b)
+	{
+		Formula result;
+		switch (op)
+		{
+		case '+':
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return a.eval(vars) + b.eval(vars);
+				}
+			};
+			break;
+		case '-':
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return a.eval(vars) - b.eval(vars);
+				}
+			};
+			break;
+		case '*':
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return a.eval(vars) * b.eval(vars);
+				}
+			};
+			break;
+		case '/':
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return a.eval(vars) / b.eval(vars);
+				}
+			};
+			break;
+		case '%':
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return a.eval(vars) % b.eval(vars);
+				}
+			};
+			break;
+		default: // '^'
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return Math.pow(a.eval(vars), b.eval(vars));
+				}
+			};
+		}
+		return fold(result, a, b);
+	}
+
+	/**
+	 * Returns the node for a call to a function of the language, or null if
+	 * there is no function with that name and amount of arguments.
+	 */
+	private static Formula function(String name, final Formula args[])
+	{
+		Formula result = null;
+		if (args.length == 1)
+		{
+			final Formula a = args[0];
+			if (name.equals("abs"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.abs(a.eval(vars));
+					}
+				};
+			else if (name.equals("floor"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.floor(a.eval(vars));
+					}
+				};
+			else if (name.equals("ceil"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.ceil(a.eval(vars));
+					}
+				};
+			else if (name.equals("round"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.round(a.eval(vars));
+					}
+				};
+			else if (name.equals("sqrt"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.sqrt(a.eval(vars));
+					}
+				};
+			if (result != null)
+				return fold(result, a, a);
+		} else if (args.length == 2)
+		{
+			final Formula a = args[0], b = args[1];
+			if (name.equals("min"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.min(a.eval(vars), b.eval(vars));
+					}
+				};
+			else if (name.equals("max"))
+				result = new Formula()
+				{
+					public double eval(double vars[])
+					{
+						return Math.max(a.eval(vars), b.eval(vars));
+					}
+				};
+			else if (name.equals("pow"))
+				return operation('^', a, b);
+			if (result != null)
+				return fold(result, a, b);
+		} else if (args.length == 3 && name.equals("clamp"))
+		{
+			final Formula a = args[0], low = args[1], high = args[2];
+			result = new Formula()
+			{
+				public double eval(double vars[])
+				{
+					return Math.max(low.eval(vars), Math.min(high.eval(vars), a.eval(vars)));
+				}
+			};
+			return a.isConstant() && low.isConstant() && high.isConstant() ? constant(result.eval(null)) : result;
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the node by its value if its operands are constant.
+	 */
+	private static Formula fold(Formula node, Formula a, Formula b)
+	{
+		return a.isConstant() && b.isConstant() ? constant(node.eval(null)) : node;
+	}
+
+	/**
+	 * Recursive descent parser building the nodes. Lowest to highest
+	 * precedence: <tt>+ -</tt>, <tt>* / %</tt>, unary <tt>-</tt>, <tt>^</tt>
+	 * (right associative).
+	 */
+	private static class Parser
+	{
+
+		private final String source;
+		private final Map<String, Integer> variables;
+		private final Map<String, int[]> tables;
+		private int pos = 0;
+
+		private Parser(String source, Map<String, Integer> variables, Map<String, int[]> tables)
+		{
+			this.source = source;
+			this.variables = variables;
+			this.tables = tables;
+		}
+
+		private Formula expression()
+		{
+			Formula result = term();
+			while (peek('+') || peek('-'))
+				result = operation(source.charAt(pos++), result, term());
+			return result;
+		}
+
+		private Formula term()
+		{
+			Formula result = unary();
+			while (peek('*') || peek('/') || peek('%'))
+				result = operation(source.charAt(pos++), result, unary());
+			return result;
+		}
+
+		private Formula unary()
+		{
+			if (peek('-'))
+			{
+				pos++;
+				return negate(unary());
+			}
+			if (peek('+'))
+			{
+				pos++;
+				return unary();
+			}
+			return power();
+		}
+
+		private Formula power()
+		{
+			Formula base = primary();
+			if (peek('^'))
+			{
+				pos++;
+				return operation('^', base, unary());
+			}
+			return base;
+		}
+
+		private Formula primary()
+		{
+			skipSpaces();
+			if (pos >= source.length())
+				throw error("unexpected end");
+
+			char c = source.charAt(pos);
+			if (c == '(')
+			{
+				pos++;
+				Formula result = expression();
+				expect(')');
+				return result;
+			}
+			if (Character.isDigit(c) || c == '.')
+				return number();
+			if (Character.isLetter(c) || c == '_')
+				return name();
+			throw error("unexpected '" + c + "'");
+		}
+
+		private Formula number()
+		{
+			int start = pos;
+			while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.'))
+				pos++;
+			try
+			{
+				return constant(Double.parseDouble(source.substring(start, pos)));
+			} catch (NumberFormatException e)
+			{
+				pos = start;
+				throw error("bad number");
+			}
+		}
+
+		private Formula name()
+		{
+			int start = pos;
+			while (pos < source.length()
+					&& (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_'))
+				pos++;
+			String name = source.substring(start, pos);
+
+			if (!peek('('))
+			{
+				Integer index = variables.get(name);
+				if (index == null)
+					throw error("unknown variable " + name);
+				return variable(index);
+			}
+
+			pos++;
+			java.util.List<Formula> args = new java.util.ArrayList<Formula>();
+			if (!peek(')'))
+			{
+				args.add(expression());
+				while (peek(','))
+				{
+					pos++;
+					args.add(expression());
+				}
+			}
+			expect(')');
+
+			int table[] = tables.get(name);
+			if (table != null && args.size() == 1)
+				return table(table, args.get(0));
+			Formula result = function(name, args.toArray(new Formula[args.size()]));
+			if (result == null)
+				throw error("unknown function " + name + " with " + args.size() + " arguments");
+			return result;
+		}
+
+		/**
+		 * Skips the spaces and returns true if the next character is
+		 * <i>c</i>, without consuming it.
+		 */
+		private boolean peek(char c)
+		{
+			skipSpaces();
+			return pos < source.length() && source.charAt(pos) == c;
+		}
+
+		private void expect(char c)
+		{
+			if (!peek(c))
+				throw error("expected '" + c + "'");
+			pos++;
+		}
+
+		private void skipSpaces()
+		{
+			while (pos < source.length() && Character.isWhitespace(source.charAt(pos)))
+				pos++;
+		}
+
+		private IllegalArgumentException error(String message)
+		{
+			return new IllegalArgumentException("Formula \"" + source + "\", " + message + " at " + pos);
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+package game.util;
+
+/**
+ * The time source of the simulation. Time only advances in whole ticks, so
+ * every object reading the clock during a tick sees the same value and no
+ * system call is made. The clock can run in real time, be paused or be
+ * accelerated to fast-forward the simulation.
+ */
+public class GameClock
+{
+
+	/**
+	 * How the real elapsed time is converted to simulation time.
+	 */
+	public enum Mode
+	{
+		REAL, PAUSED, ACCELERATED
+	}
+
+	private final int tickRate;
+	private final long tickLength; // in nanoseconds
+	private Mode mode = Mode.REAL;
+	private double speed = 1; // time multiplier for the accelerated mode
+	private long tick = 0;
+	private long millis = 0; // simulation time of the current tick
+	private long accumulator = 0; // simulation nanoseconds not yet consumed by a tick
+
+	public GameClock(int tickRate)
+	{
+		this.tickRate = tickRate;
+		tickLength = 1000000000L / tickRate;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>elapse</b> <br>
+	 * <p>
+	 * <tt>public void elapse(long realNanos)</tt>
+	 * </p>
+	 * Adds real elapsed time to the clock, scaled according to its mode. The
+	 * time is consumed by <tt>tick()</tt>. <br>
+	 * <br>
+	 *
+	 * @see #isTickDue()
+	 */
+	public void elapse(long realNanos)
+	{
+		switch (mode)
+		{
+		case REAL:
+			accumulator += realNanos;
+			break;
+		case ACCELERATED:
+			accumulator += (long) (realNanos * speed);
+			break;
+		case PAUSED:
+			break;
+		}
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>isTickDue</b> <br>
+	 * <p>
+	 * <tt>public boolean isTickDue()</tt>
+	 * </p>
+	 * Returns true if enough time has elapsed to run another tick. <br>
+	 * <br>
+	 */
+	public boolean isTickDue()
+	{
+		return accumulator >= tickLength;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>tick</b> <br>
+	 * <p>
+	 * <tt>public void tick()</tt>
+	 * </p>
+	 * Advances the clock by one tick. Can also be called directly to step the
+	 * simulation as fast as possible (tests, benchmarks). <br>
+	 * <br>
+	 */
+	public void tick()
+	{
+		tick++;
+		millis = tick * 1000 / tickRate;
+		if (accumulator >= tickLength)
+			accumulator -= tickLength;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>dropBacklog</b> <br>
+	 * <p>
+	 * <tt>public void dropBacklog()</tt>
+	 * </p>
+	 * Discards the whole ticks that could not be run in time, keeping the
+	 * fraction of the current one. <br>
+	 * <br>
+	 */
+	public void dropBacklog()
+	{
+		accumulator %= tickLength;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getMaxSteps</b> <br>
+	 * <p>
+	 * <tt>public int getMaxSteps(int maxCatchUp)</tt>
+	 * </p>
+	 * Returns the maximum amount of ticks to run in a frame, scaled by the
+	 * speed so an accelerated clock is not throttled by the catch up limit. <br>
+	 * <br>
+	 */
+	public int getMaxSteps(int maxCatchUp)
+	{
+		if (mode == Mode.ACCELERATED)
+			return (int) Math.ceil(maxCatchUp * speed);
+		return maxCatchUp;
+	}
+
+	public long getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getMillis</b> <br>
+	 * <p>
+	 * <tt>public long getMillis()</tt>
+	 * </p>
+	 * Returns the simulation time in milliseconds at the current tick. Use it
+	 * instead of <tt>System.currentTimeMillis()</tt> for anything the
+	 * simulation depends on. <br>
+	 * <br>
+	 */
+	public long getMillis()
+	{
+		return millis;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>getAlpha</b> <br>
+	 * <p>
+	 * <tt>public float getAlpha()</tt>
+	 * </p>
+	 * Returns the fraction (0 to 1) of a tick elapsed since the last tick.
+	 * Renderers can use it to interpolate between the previous and the current
+	 * simulation state. <br>
+	 * <br>
+	 */
+	public float getAlpha()
+	{
+		return Math.min(1f, (float) accumulator / tickLength);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>toTicks</b> <br>
+	 * <p>
+	 * <tt>public int toTicks(int millis)</tt>
+	 * </p>
+	 * Converts a duration in milliseconds to ticks, rounding up so that any
+	 * positive duration lasts at least one tick. <br>
+	 * <br>
+	 */
+	public int toTicks(int millis)
+	{
+		return (int) (((long) millis * tickRate + 999) / 1000);
+	}
+
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	public void setMode(Mode mode)
+	{
+		this.mode = mode;
+	}
+
+	public double getSpeed()
+	{
+		return speed;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>setSpeed</b> <br>
+	 * <p>
+	 * <tt>public void setSpeed(double speed)</tt>
+	 * </p>
+	 * Sets the time multiplier and switches to the accelerated mode (or to the
+	 * real mode if the speed is 1). <br>
+	 * <br>
+	 */
+	public void setSpeed(double speed)
+	{
+		this.speed = speed;
+		mode = speed == 1 ? Mode.REAL : Mode.ACCELERATED;
+	}
+
+	public String toString()
+	{
+		return "tick " + tick + " (" + millis + "ms, " + mode + ")";
+	}
+
+}
@@ -0,0 +1,80 @@
+package game.util;
+
+import java.util.Random;
+
+/**
+ * The random source of the simulation. Every subsystem draws from its own
+ * stream derived from a single world seed, so a run can be reproduced from its
+ * seed and, for example, more monsters moving around does not change which
+ * items a monster drops.
+ */
+public class GameRandom
+{
+
+	/**
+	 * The independent random streams, one per subsystem.
+	 */
+	public enum Stream
+	{
+		AI, COMBAT, LOOT
+	}
+
+	private final long seed;
+	private final Random streams[] = new Random[Stream.values().length];
+
+	public GameRandom(long seed)
+	{
+		this.seed = seed;
+
+		for (Stream stream : Stream.values())
+			streams[stream.ordinal()] = new Random(mix(seed + 0x9E3779B97F4A7C15L * (stream.ordinal() + 1)));
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>get</b> <br>
+	 * <p>
+	 * <tt>public Random get(Stream stream)</tt>
+	 * </p>
+	 * Returns the random generator of the given subsystem. <br>
+	 * <br>
+	 */
+	public Random get(Stream stream)
+	{
+		return streams[stream.ordinal()];
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>split</b> <br>
+	 * <p>
+	 * <tt>public GameRandom split(long key)</tt>
+	 * </p>
+	 * Returns a new random source whose seed is derived from this one and the
+	 * key. The same seed and key always produce the same streams. <br>
+	 * <br>
+	 */
+	public GameRandom split(long key)
+	{
+		return new GameRandom(mix(seed ^ mix(key)));
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * Scrambles the bits of a 64 bit value (SplitMix64 finalizer), so that
+	 * close seeds give unrelated streams.
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
@@ -0,0 +1,329 @@
+package game.util;
+
+import java.io.IOException;
+
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
+
+/**
+ * Statically queues the keyboard and mouse events and hands them to the game
+ * one by one, each in the tick it belongs to. The game reads the event being
+ * handled from this class instead of polling <tt>Keyboard</tt> and
+ * <tt>Mouse</tt>, so the events can be recorded to an input journal and fed
+ * back from one without a real keyboard.
+ *
+ * @see InputJournal
+ */
+public class Input
+{
+
+	/**
+	 * Where the events come from and whether they are recorded.
+	 */
+	public enum Mode
+	{
+		LIVE, RECORD, REPLAY
+	}
+
+	private static Mode mode = Mode.LIVE;
+	private static InputJournal journal;
+	private static boolean journalPending = false; // the last event read from the journal is not queued yet
+	private static boolean journalFinished = false;
+
+	// queued events (circular buffer of parallel arrays so polling does not allocate)
+	private static long ticks[] = new long[64];
+	private static int types[] = new int[64], keys[] = new int[64], xs[] = new int[64], ys[] = new int[64],
+			dxs[] = new int[64], dys[] = new int[64], buttons[] = new int[64];
+	private static boolean states[] = new boolean[64];
+	private static int head = 0, size = 0;
+
+	// the event being handled
+	private static int type, key, mouseX, mouseY, mouseDX, mouseDY, button;
+	private static boolean state;
+	private static boolean keysDown[] = new boolean[Keyboard.KEYBOARD_SIZE], buttonsDown[] = new boolean[16];
+
+	/**
+	 *
+	 * <br>
+	 * <b>record</b> <br>
+	 * <p>
+	 * <tt>public static void record(String path, int tickRate, long seed) throws IOException</tt>
+	 * </p>
+	 * Records every handled event to a new journal file. <br>
+	 * <br>
+	 */
+	public static void record(String path, int tickRate, long seed) throws IOException
+	{
+		journal = InputJournal.create(path, tickRate, seed);
+		mode = Mode.RECORD;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>replay</b> <br>
+	 * <p>
+	 * <tt>public static InputJournal replay(String path) throws IOException</tt>
+	 * </p>
+	 * Takes the events from a recorded journal instead of the keyboard and the
+	 * mouse. Returns the journal so the caller can restore its seed and tick
+	 * rate. <br>
+	 * <br>
+	 */
+	public static InputJournal replay(String path) throws IOException
+	{
+		journal = InputJournal.open(path);
+		mode = Mode.REPLAY;
+		return journal;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>poll</b> <br>
+	 * <p>
+	 * <tt>public static void poll(long tick)</tt>
+	 * </p>
+	 * Queues the pending keyboard and mouse events to be handled in
+	 * <i>tick</i>. Does nothing while replaying. <br>
+	 * <br>
+	 */
+	public static void poll(long tick)
+	{
+		if (mode == Mode.REPLAY)
+			return;
+
+		while (Keyboard.next())
+			enqueue(tick, InputJournal.KEY, Keyboard.getEventKey(), 0, 0, 0, 0, -1, Keyboard.getEventKeyState());
+
+		while (Mouse.next())
+			enqueue(tick, InputJournal.MOUSE, 0, Mouse.getEventX(), Mouse.getEventY(), Mouse.getEventDX(),
+					Mouse.getEventDY(), Mouse.getEventButton(), Mouse.getEventButtonState());
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>next</b> <br>
+	 * <p>
+	 * <tt>public static boolean next(long tick)</tt>
+	 * </p>
+	 * Moves to the next event to be handled in <i>tick</i>. Returns false if
+	 * there are no more events for this tick. <br>
+	 * <br>
+	 */
+	public static boolean next(long tick)
+	{
+		if (mode == Mode.REPLAY)
+			readJournal(tick);
+
+		if (size == 0 || ticks[head] > tick)
+			return false;
+
+		type = types[head];
+		key = keys[head];
+		if (type == InputJournal.MOUSE) // key events carry no pointer, keep the last one
+		{
+			mouseX = xs[head];
+			mouseY = ys[head];
+			mouseDX = dxs[head];
+			mouseDY = dys[head];
+			button = buttons[head];
+		}
+		state = states[head];
+		head = (head + 1) % ticks.length;
+		size--;
+
+		if (type == InputJournal.KEY && key >= 0 && key < keysDown.length)
+			keysDown[key] = state;
+		else if (type == InputJournal.MOUSE && button >= 0 && button < buttonsDown.length)
+			buttonsDown[button] = state;
+
+		if (mode == Mode.RECORD)
+		{
+			try
+			{
+				if (type == InputJournal.KEY)
+					journal.writeKey(tick, key, state);
+				else
+					journal.writeMouse(tick, mouseX, mouseY, mouseDX, mouseDY, button, state);
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+				mode = Mode.LIVE; // keep playing without recording
+			}
+		}
+
+		return true;
+	}
+
+	private static void readJournal(long tick)
+	{
+		try
+		{
+			while (!journalFinished)
+			{
+				if (!journalPending)
+				{
+					if (!journal.read())
+					{
+						journalFinished = true;
+						System.out.println("Replay finished at tick " + tick);
+						return;
+					}
+					journalPending = true;
+				}
+
+				if (journal.getTick() > tick)
+					return;
+
+				enqueue(journal.getTick(), journal.getType(), journal.getKey(), journal.getX(), journal.getY(),
+						journal.getDX(), journal.getDY(), journal.getButton(), journal.getState());
+				journalPending = false;
+			}
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			journalFinished = true;
+		}
+	}
+
+	private static void enqueue(long tick, int type, int key, int x, int y, int dx, int dy, int button, boolean state)
+	{
+		if (size == ticks.length)
+			grow();
+
+		int i = (head + size) % ticks.length;
+		ticks[i] = tick;
+		types[i] = type;
+		keys[i] = key;
+		xs[i] = x;
+		ys[i] = y;
+		dxs[i] = dx;
+		dys[i] = dy;
+		buttons[i] = button;
+		states[i] = state;
+		size++;
+	}
+
+	private static void grow()
+	{
+		int capacity = ticks.length * 2;
+		long newTicks[] = new long[capacity];
+		int newTypes[] = new int[capacity], newKeys[] = new int[capacity], newXs[] = new int[capacity],
+				newYs[] = new int[capacity], newDXs[] = new int[capacity], newDYs[] = new int[capacity],
+				newButtons[] = new int[capacity];
+		boolean newStates[] = new boolean[capacity];
+
+		for (int j = 0; j < size; j++)
+		{
+			int i = (head + j) % ticks.length;
+			newTicks[j] = ticks[i];
+			newTypes[j] = types[i];
+			newKeys[j] = keys[i];
+			newXs[j] = xs[i];
+			newYs[j] = ys[i];
+			newDXs[j] = dxs[i];
+			newDYs[j] = dys[i];
+			newButtons[j] = buttons[i];
+			newStates[j] = states[i];
+		}
+
+		ticks = newTicks;
+		types = newTypes;
+		keys = newKeys;
+		xs = newXs;
+		ys = newYs;
+		dxs = newDXs;
+		dys = newDYs;
+		buttons = newButtons;
+		states = newStates;
+		head = 0;
+	}
+
+	public static void close()
+	{
+		if (journal != null)
+			journal.close();
+	}
+
+	public static Mode getMode()
+	{
+		return mode;
+	}
+
+	public static boolean isKeyEvent()
+	{
+		return type == InputJournal.KEY;
+	}
+
+	public static int getEventKey()
+	{
+		return key;
+	}
+
+	public static boolean getEventKeyState()
+	{
+		return type == InputJournal.KEY && state;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>isKeyDown</b> <br>
+	 * <p>
+	 * <tt>public static boolean isKeyDown(int key)</tt>
+	 * </p>
+	 * Returns whether the key is held down according to the events handled so
+	 * far. <br>
+	 * <br>
+	 */
+	public static boolean isKeyDown(int key)
+	{
+		return keysDown[key];
+	}
+
+	/**
+	 * Horizontal position of the mouse in pixels (origin at the lower-left
+	 * corner, as in <tt>Mouse</tt>).
+	 */
+	public static int getMouseX()
+	{
+		return mouseX;
+	}
+
+	/**
+	 * Vertical position of the mouse in pixels (origin at the lower-left
+	 * corner, as in <tt>Mouse</tt>).
+	 */
+	public static int getMouseY()
+	{
+		return mouseY;
+	}
+
+	public static int getMouseDX()
+	{
+		return mouseDX;
+	}
+
+	public static int getMouseDY()
+	{
+		return mouseDY;
+	}
+
+	public static int getEventButton()
+	{
+		return button;
+	}
+
+	public static boolean getEventButtonState()
+	{
+		return type == InputJournal.MOUSE && state;
+	}
+
+	public static boolean isButtonDown(int button)
+	{
+		return buttonsDown[button];
+	}
+
+}
@@ -0,0 +1,256 @@
+package game.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A compact binary file with every input event of a session and the tick in
+ * which it was handled. Together with the world seed stored in its header it is
+ * enough to replay the session.
+ * <p>
+ * Format: a header (magic, version, tick rate, seed) followed by one record per
+ * event: the tick delta from the previous record (varint), the event type
+ * (byte) and its fields (varints, signed ones zigzag encoded).
+ */
+public class InputJournal
+{
+
+	public static final int KEY = 0, MOUSE = 1;
+	private static final int MAGIC = 0x4A524E4C, VERSION = 1; // "JRNL"
+
+	private DataOutputStream out;
+	private DataInputStream in;
+	private int tickRate;
+	private long seed, lastTick = 0;
+
+	// fields of the last event read
+	private long tick;
+	private int type, key, x, y, dx, dy, button;
+	private boolean state;
+
+	private InputJournal()
+	{
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>create</b> <br>
+	 * <p>
+	 * <tt>public static InputJournal create(String path, int tickRate, long seed) throws IOException</tt>
+	 * </p>
+	 * Creates a new journal file to record a session. <br>
+	 * <br>
+	 */
+	public static InputJournal create(String path, int tickRate, long seed) throws IOException
+	{
+		InputJournal journal = new InputJournal();
+		journal.tickRate = tickRate;
+		journal.seed = seed;
+		journal.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		journal.out.writeInt(MAGIC);
+		journal.out.writeShort(VERSION);
+		journal.out.writeInt(tickRate);
+		journal.out.writeLong(seed);
+		return journal;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>open</b> <br>
+	 * <p>
+	 * <tt>public static InputJournal open(String path) throws IOException</tt>
+	 * </p>
+	 * Opens a recorded journal to replay it. <br>
+	 * <br>
+	 */
+	public static InputJournal open(String path) throws IOException
+	{
+		InputJournal journal = new InputJournal();
+		journal.in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+		if (journal.in.readInt() != MAGIC || journal.in.readShort() != VERSION)
+		{
+			journal.in.close();
+			throw new IOException("Not an input journal: " + path);
+		}
+		journal.tickRate = journal.in.readInt();
+		journal.seed = journal.in.readLong();
+		return journal;
+	}
+
+	public void writeKey(long tick, int key, boolean state) throws IOException
+	{
+		writeHeader(tick, KEY);
+		writeVarInt(key << 1 | (state ? 1 : 0));
+	}
+
+	public void writeMouse(long tick, int x, int y, int dx, int dy, int button, boolean state) throws IOException
+	{
+		writeHeader(tick, MOUSE);
+		writeVarInt(x);
+		writeVarInt(y);
+		writeVarInt(zigzag(dx));
+		writeVarInt(zigzag(dy));
+		writeVarInt(zigzag(button)); // -1 when no button changed
+		out.writeBoolean(state);
+	}
+
+	private void writeHeader(long tick, int type) throws IOException
+	{
+		writeVarInt((int) (tick - lastTick));
+		out.writeByte(type);
+		lastTick = tick;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>read</b> <br>
+	 * <p>
+	 * <tt>public boolean read() throws IOException</tt>
+	 * </p>
+	 * Reads the next event. Returns false at the end of the journal. <br>
+	 * <br>
+	 */
+	public boolean read() throws IOException
+	{
+		int delta;
+		try
+		{
+			delta = readVarInt();
+		} catch (EOFException e)
+		{
+			return false;
+		}
+
+		tick = lastTick + delta;
+		lastTick = tick;
+		type = in.readByte();
+
+		if (type == KEY)
+		{
+			int data = readVarInt();
+			key = data >>> 1;
+			state = (data & 1) == 1;
+		} else
+		{
+			x = readVarInt();
+			y = readVarInt();
+			dx = unzigzag(readVarInt());
+			dy = unzigzag(readVarInt());
+			button = unzigzag(readVarInt());
+			state = in.readBoolean();
+		}
+		return true;
+	}
+
+	public void close()
+	{
+		try
+		{
+			if (out != null)
+				out.close();
+			if (in != null)
+				in.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private void writeVarInt(int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private int readVarInt() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed input journal");
+	}
+
+	private static int zigzag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public long getTick()
+	{
+		return tick;
+	}
+
+	public int getType()
+	{
+		return type;
+	}
+
+	public int getKey()
+	{
+		return key;
+	}
+
+	public boolean getState()
+	{
+		return state;
+	}
+
+	public int getX()
+	{
+		return x;
+	}
+
+	public int getY()
+	{
+		return y;
+	}
+
+	public int getDX()
+	{
+		return dx;
+	}
+
+	public int getDY()
+	{
+		return dy;
+	}
+
+	public int getButton()
+	{
+		return button;
+	}
+
+}
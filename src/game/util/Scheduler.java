@@ -0,0 +1,302 @@
+package game.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs tasks after a number of game ticks, once or repeatedly, on the thread
+ * running the simulation. Used instead of a thread per timer for regeneration,
+ * buffs, damage over time and any other delayed game logic.
+ * <p>
+ * The tasks are kept in a hierarchical timing wheel: level 0 has a slot per
+ * tick for the next 64 ticks, each slot of level 1 covers 64 ticks, each slot
+ * of level 2 covers 64 * 64 ticks and so on. Scheduling and cancelling take
+ * constant time, and each tick only visits one slot of level 0 (and, once
+ * every 64 ticks, moves the tasks of one slot of an upper level down).
+ */
+public class Scheduler
+{
+
+	private static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 4;
+
+	private final Task wheels[][] = new Task[LEVELS][SLOTS]; // heads of the doubly linked slot lists
+	private long current; // last tick run
+	private final List<Task> later = new ArrayList<Task>(); // tasks to put back after running a slot
+
+	/**
+	 * A scheduled task. Keep it to cancel, pause or resume the task.
+	 */
+	public static class Task
+	{
+		private final Scheduler scheduler;
+		private final Runnable action;
+		private final int period; // in ticks, 0 for one-shot tasks
+		private long due; // tick in which it runs
+		private long remaining; // ticks left when it was paused
+		private boolean cancelled = false, paused = false;
+		private Task previous, next;
+		private int level = -1, slot; // position in the wheels, level -1 when not in them
+
+		private Task(Scheduler scheduler, Runnable action, long due, int period)
+		{
+			this.scheduler = scheduler;
+			this.action = action;
+			this.due = due;
+			this.period = period;
+		}
+
+		/**
+		 * Stops the task. It will not run again.
+		 */
+		public void cancel()
+		{
+			synchronized (scheduler)
+			{
+				cancelled = true;
+				scheduler.remove(this);
+			}
+		}
+
+		/**
+		 * Stops the task keeping the ticks left until its next run, so it can
+		 * be resumed later.
+		 */
+		public void pause()
+		{
+			synchronized (scheduler)
+			{
+				if (cancelled || paused)
+					return;
+				paused = true;
+				remaining = Math.max(1, due - scheduler.current);
+				scheduler.remove(this);
+			}
+		}
+
+		/**
+		 * Restarts a paused task. It runs after the ticks it had left when it
+		 * was paused.
+		 */
+		public void resume()
+		{
+			synchronized (scheduler)
+			{
+				if (cancelled || !paused)
+					return;
+				paused = false;
+				due = scheduler.current + remaining;
+				scheduler.insert(this);
+			}
+		}
+
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		public boolean isPaused()
+		{
+			return paused;
+		}
+
+		public boolean isRepeating()
+		{
+			return period > 0;
+		}
+
+		public long getDueTick()
+		{
+			return due;
+		}
+	}
+
+	/**
+	 * @param tick
+	 *            - The current tick of the game clock.
+	 */
+	public Scheduler(long tick)
+	{
+		current = tick;
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>schedule</b> <br>
+	 * <p>
+	 * <tt>public synchronized Task schedule(Runnable action, int delay)</tt>
+	 * </p>
+	 * Runs <i>action</i> once, <i>delay</i> ticks from now (at least one). <br>
+	 * <br>
+	 */
+	public synchronized Task schedule(Runnable action, int delay)
+	{
+		return add(new Task(this, action, current + Math.max(1, delay), 0));
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>scheduleRepeating</b> <br>
+	 * <p>
+	 * <tt>public synchronized Task scheduleRepeating(Runnable action, int delay, int period)</tt>
+	 * </p>
+	 * Runs <i>action</i> <i>delay</i> ticks from now (at least one) and then
+	 * every <i>period</i> ticks (at least one) until it is cancelled. <br>
+	 * <br>
+	 */
+	public synchronized Task scheduleRepeating(Runnable action, int delay, int period)
+	{
+		return add(new Task(this, action, current + Math.max(1, delay), Math.max(1, period)));
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>advance</b> <br>
+	 * <p>
+	 * <tt>public synchronized void advance(long tick)</tt>
+	 * </p>
+	 * Runs, tick by tick, the tasks due up to <i>tick</i>. <br>
+	 * <br>
+	 */
+	public synchronized void advance(long tick)
+	{
+		while (current < tick)
+		{
+			current++;
+			int index = (int) (current & MASK);
+			if (index == 0)
+				cascade(1);
+			run(index);
+		}
+	}
+
+	public synchronized long getTick()
+	{
+		return current;
+	}
+
+	private Task add(Task task)
+	{
+		insert(task);
+		return task;
+	}
+
+	private void run(int index)
+	{
+		Task task;
+		while ((task = wheels[0][index]) != null)
+		{
+			remove(task);
+
+			if (task.due > current) // placed here by a cascade of a far away task, or scheduled while running
+			{
+				later.add(task);
+				continue;
+			}
+
+			if (task.period > 0)
+			{
+				task.due += task.period;
+				later.add(task);
+			}
+
+			try
+			{
+				task.action.run();
+			} catch (RuntimeException e)
+			{
+				e.printStackTrace(); // a failing task must not stop the game
+			}
+		}
+
+		// put back the tasks that are not due yet, unless they were stopped (or resumed) while running
+		for (Task t : later)
+		{
+			if (!t.cancelled && !t.paused && t.level < 0)
+				insert(t);
+		}
+		later.clear();
+	}
+
+	/**
+	 * Moves the tasks of the current slot of <i>level</i> to the lower levels,
+	 * cascading first the upper level if its slot also changes now.
+	 */
+	private void cascade(int level)
+	{
+		if (level >= LEVELS)
+			return;
+
+		int index = (int) ((current >> (BITS * level)) & MASK);
+		if (index == 0)
+			cascade(level + 1);
+
+		Task task = wheels[level][index];
+		wheels[level][index] = null;
+		while (task != null)
+		{
+			Task next = task.next;
+			task.previous = task.next = null;
+			task.level = -1;
+			insert(task);
+			task = next;
+		}
+	}
+
+	private void insert(Task task)
+	{
+		long delta = task.due - current;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1)))
+			level++;
+
+		int slot;
+		if (delta >= 1L << (BITS * LEVELS)) // farther than the wheels reach, wait in the last slot to cascade
+			slot = (int) (((current >> (BITS * level)) - 1) & MASK);
+		else
+			slot = (int) ((task.due >> (BITS * level)) & MASK);
+
+		// append, so the tasks of a slot run in the order they were scheduled
+		task.level = level;
+		task.slot = slot;
+		Task head = wheels[level][slot];
+		if (head == null)
+		{
+			task.previous = task;
+			wheels[level][slot] = task;
+		} else
+		{
+			Task tail = head.previous;
+			tail.next = task;
+			task.previous = tail;
+			head.previous = task;
+		}
+	}
+
+	private void remove(Task task)
+	{
+		if (task.level < 0)
+			return;
+
+		Task head = wheels[task.level][task.slot];
+		if (task == head)
+		{
+			wheels[task.level][task.slot] = task.next;
+			if (task.next != null)
+				task.next.previous = task.previous;
+		} else
+		{
+			task.previous.next = task.next;
+			if (task.next != null)
+				task.next.previous = task.previous;
+			else
+				head.previous = task.previous;
+		}
+
+		task.previous = task.next = null;
+		task.level = -1;
+	}
+
+}
@@ -32,8 +32,16 @@ public class SubImage
 		this.size = size;
 	}
 
+	public void setTexture(Texture texture)
+	{
+		spriteSheet = texture;
+	}
+
 	public void render(int x, int y, int flipClockWise)
 	{
+		if (spriteSheet == null)
+			return;
+
 		float w = spriteSheet.getImageWidth();
 		float h = spriteSheet.getImageHeight();
 
@@ -1,54 +1,79 @@
 package game.util;
 
+import game.Main;
 import game.entities.EntityType;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.newdawn.slick.opengl.Texture;
 
+/**
+ * Holds the textures of the entities by id. Textures are loaded lazily the
+ * first time they are requested, and never when the game runs headless.
+ */
 public class TextureManager
 {
 
 	private java.util.Map<Integer, Texture> textures = new HashMap<Integer, Texture>();
+	private Set<Integer> requested = new HashSet<Integer>(); // ids already looked for, found or not
 
 	/**
-	 * 
+	 *
 	 * <br>
 	 * <b>add</b> <br>
 	 * <p>
 	 * <tt>public void add(int id)</tt>
 	 * </p>
-	 * Adds a texture to the TextureManager given an id.
+	 * Loads the texture of the given id right away instead of on its first
+	 * use. Does nothing when the game runs headless.
 	 */
 	public void add(int id)
 	{
-
-		String filePath = EntityType.getType(id).toString();
-		filePath += "/" + Util.hexID(id) + "/texture.png";
-
-		if (get(id) != null)
-			return;
-
-		textures.put(id, Util.getTexture(filePath));
+		get(id);
 	}
 
 	/**
-	 * 
+	 *
 	 * <br>
 	 * <b>get</b> <br>
 	 * <p>
 	 * <tt>public Texture get(int id)</tt>
 	 * </p>
-	 * Retrieves and returns a texture from the TextureManager given an id. <br>
+	 * Retrieves and returns a texture from the TextureManager given an id,
+	 * loading it on the first request. Returns null when the texture does not
+	 * exist or the game runs headless. <br>
 	 * <br>
 	 */
 	public Texture get(int id)
+	{
+		if (!requested.contains(id) && !Main.isHeadless())
+		{
+			requested.add(id);
+			textures.put(id, Util.getTexture(EntityType.getType(id) + "/" + Util.hexID(id) + "/texture.png"));
+		}
+
+		return textures.get(id);
+	}
+
+	/**
+	 *
+	 * <br>
+	 * <b>peek</b> <br>
+	 * <p>
+	 * <tt>public Texture peek(int id)</tt>
+	 * </p>
+	 * Returns the texture of the given id only if it is already loaded. <br>
+	 * <br>
+	 */
+	public Texture peek(int id)
 	{
 		return textures.get(id);
 	}
 
 	/**
-	 * 
+	 *
 	 * <br>
 	 * <b>recycle</b> <br>
 	 * <p>
@@ -59,6 +84,7 @@ public class TextureManager
 	 */
 	public void recycle(int id, Texture texture)
 	{
+		requested.add(id);
 		textures.put(id, texture);
 	}
 
@@ -10,6 +10,7 @@ import static org.lwjgl.opengl.GL11.glLoadIdentity;
 import static org.lwjgl.opengl.GL11.glTexCoord2f;
 import static org.lwjgl.opengl.GL11.glTranslatef;
 import static org.lwjgl.opengl.GL11.glVertex2f;
+import game.Main;
 import game.entities.superentities.SuperEntity;
 import game.structure.Map;
 import game.structure.Slot;
@@ -266,6 +267,9 @@ public class Util
 	 */
 	public static Texture getTexture(String path)
 	{
+		if (Main.isHeadless()) // there is no GL context to load it into
+			return null;
+
 		try
 		{
 			return TextureLoader.getTexture("PNG", new FileInputStream(new File("data/" + path)));
@@ -302,19 +306,70 @@ public class Util
 	 * @see com.game.etities.superentities#LEFT
 	 */
 	public static Point addRelPoints(Point p, Point p2, int facingDir)
+	{
+		if (facingDir < SuperEntity.UP || facingDir > SuperEntity.LEFT)
+			return null;
+		int pos = addRel(p.getX(), p.getY(), p2.getX(), p2.getY(), facingDir);
+		return new Point(unpackX(pos), unpackY(pos));
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>addRel</b> <br>
+	 * <p>
+	 * <tt>public static int addRel(int x, int y, int relX, int relY, int facingDir)</tt>
+	 * </p>
+	 * Same as <tt>addRelPoints</tt> without allocating: returns the position
+	 * (<i>relX</i>, <i>relY</i>) relative to (<i>x</i>, <i>y</i>) facing
+	 * <i>facingDir</i>, packed. <br>
+	 * <br>
+	 * 
+	 * @see #addRelPoints(Point, Point, int)
+	 * @see #pack(int, int)
+	 */
+	public static int addRel(int x, int y, int relX, int relY, int facingDir)
 	{
 		switch (facingDir)
 		{
 		case SuperEntity.UP:
-			return new Point(p.getX() + p2.getX(), p.getY() - p2.getY());
+			return pack(x + relX, y - relY);
 		case SuperEntity.RIGHT:
-			return new Point(p.getX() + p2.getY(), p.getY() + p2.getX());
+			return pack(x + relY, y + relX);
 		case SuperEntity.DOWN:
-			return new Point(p.getX() - p2.getX(), p.getY() + p2.getY());
-		case SuperEntity.LEFT:
-			return new Point(p.getX() - p2.getY(), p.getY() - p2.getX());
+			return pack(x - relX, y + relY);
+		default:
+			return pack(x - relY, y - relX);
 		}
-		return null;
+	}
+
+	/**
+	 * 
+	 * <br>
+	 * <b>pack</b> <br>
+	 * <p>
+	 * <tt>public static int pack(int x, int y)</tt>
+	 * </p>
+	 * Packs a position in an int, 16 bits per coordinate (from -32768 to
+	 * 32767), to pass and keep positions without allocating points. <br>
+	 * <br>
+	 * 
+	 * @see #unpackX(int)
+	 * @see #unpackY(int)
+	 */
+	public static int pack(int x, int y)
+	{
+		return y << 16 | (x & 0xFFFF);
+	}
+
+	public static int unpackX(int pos)
+	{
+		return (short) pos;
+	}
+
+	public static int unpackY(int pos)
+	{
+		return pos >> 16;
 	}
 
 	/**
@@ -362,34 +417,42 @@ public class Util
 	 */
 	public static void renderEntity(Texture texture, Point pos, Point offset, Dimension size, int rotateClockWise, int flipX,
 			int flipY)
-	{		
-		Point renderPos = new Point(pos.getX() * Slot.SIZE + offset.getX(), pos.getY() * Slot.SIZE + offset.getY());
+	{
+		renderEntity(texture, pos.getX(), pos.getY(), offset.getX(), offset.getY(), size.getWidth(), size.getHeight(),
+				rotateClockWise, flipX, flipY);
+	}
 
-		if (texture == null
-				|| !Map.isPointInGrid(new Point(renderPos.getX() / Slot.SIZE, renderPos.getY() / Slot.SIZE)))
-			return;
+	/**
+	 * <br>
+	 * <b>render</b> <br>
+	 * <p>
+	 * <tt>public static void renderEntity(Texture texture, int x, int y, int offsetX, int offsetY, int width, int height, int rotateClockWise, int flipX, int flipY)</tt>
+	 * </p>
+	 * Same as the version taking points, without allocating anything. Used
+	 * to render every entity every frame. <br>
+	 * <br>
+	 */
+	public static void renderEntity(Texture texture, int x, int y, int offsetX, int offsetY, int width, int height,
+			int rotateClockWise, int flipX, int flipY)
+	{
+		int renderX = x * Slot.SIZE + offsetX, renderY = y * Slot.SIZE + offsetY;
 
-		Point rotates[] = new Point[4];
-		rotates[(0 + rotateClockWise) % 4] = new Point(0, 0);
-		rotates[(1 + rotateClockWise) % 4] = new Point(size.getWidth() * Slot.SIZE, 0);
-		rotates[(2 + rotateClockWise) % 4] = new Point(size.getWidth() * Slot.SIZE, size.getHeight() * Slot.SIZE);
-		rotates[(3 + rotateClockWise) % 4] = new Point(0, size.getHeight() * Slot.SIZE);
+		if (texture == null || !Map.isPointInGrid(renderX / Slot.SIZE, renderY / Slot.SIZE))
+			return;
 
-		Point flips[] = new Point[4];
-		flips[0] = new Point((flipX + flipY) % 2, flipY);
-		flips[1] = new Point((flips[0].getX() + 1) % 2, flips[0].getY());
-		flips[2] = new Point(flips[1].getX(), (flips[1].getY() + 1) % 2);
-		flips[3] = new Point((flips[2].getX() + 1) % 2, flips[2].getY());
+		// texture coordinates of the first corner, the others go around the quad
+		int flipU = (flipX + flipY) % 2, flipV = flipY;
 
 		glEnable(GL_TEXTURE_2D);
 		texture.bind();
 		glLoadIdentity();
-		glTranslatef(renderPos.getX(), renderPos.getY(), 0);
+		glTranslatef(renderX, renderY, 0);
 		glBegin(GL_QUADS);
 		for (int i = 0; i < 4; i++)
 		{
-			glTexCoord2f(flips[i].getX(), flips[i].getY());
-			glVertex2f(rotates[i].getX(), rotates[i].getY());
+			int corner = ((i - rotateClockWise) % 4 + 4) % 4; // clockwise from the upper left
+			glTexCoord2f(i == 1 || i == 2 ? 1 - flipU : flipU, i >= 2 ? 1 - flipV : flipV);
+			glVertex2f(corner == 1 || corner == 2 ? width * Slot.SIZE : 0, corner >= 2 ? height * Slot.SIZE : 0);
 		}
 		glEnd();
 		glLoadIdentity();